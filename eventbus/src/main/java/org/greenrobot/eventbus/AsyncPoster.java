@@ -30,8 +30,11 @@ class AsyncPoster implements Runnable {
         queue = new PendingPostQueue();
     }
 
-    public void enqueue(Subscription subscription, Object event) {
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+    public void enqueue(EventBus eventBus, Subscription subscription, String url, Object event, EventPriority priority) {
+        enqueue(PendingPost.obtainPendingPost(eventBus, subscription, url, event, priority));
+    }
+
+    void enqueue(PendingPost pendingPost) {
         queue.enqueue(pendingPost);
         eventBus.getExecutorService().execute(this);
     }
@@ -42,7 +45,7 @@ class AsyncPoster implements Runnable {
         if (pendingPost == null) {
             throw new IllegalStateException("No pending post available");
         }
-        eventBus.invokeSubscriber(pendingPost);
+        pendingPost.eventBus.invokeSubscriber(pendingPost, null);
     }
 
 }
@@ -28,14 +28,22 @@ final class BackgroundPoster implements Runnable {
     private final EventBus eventBus;
 
     private volatile boolean executorRunning;
+    /**
+     * Incremented when a stuck worker is replaced, so the old worker exits once its delivery returns. Only changed in
+     * synchronized blocks.
+     */
+    private volatile int worker;
 
     BackgroundPoster(EventBus eventBus) {
         this.eventBus = eventBus;
         queue = new PendingPostQueue();
     }
 
-    public void enqueue(Subscription subscription, Object event) {
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+    public void enqueue(EventBus eventBus, Subscription subscription, String url, Object event, EventPriority priority) {
+        enqueue(PendingPost.obtainPendingPost(eventBus, subscription, url, event, priority));
+    }
+
+    void enqueue(PendingPost pendingPost) {
         synchronized (this) {
             queue.enqueue(pendingPost);
             if (!executorRunning) {
@@ -45,14 +53,33 @@ final class BackgroundPoster implements Runnable {
         }
     }
 
+    /**
+     * Hands the queue to a new worker while the current one is stuck in a delivery. The stuck delivery continues, but
+     * later events no longer wait for it.
+     *
+     * @return false if no worker is running
+     */
+    synchronized boolean replaceWorker() {
+        if (!executorRunning) {
+            return false;
+        }
+        worker++;
+        eventBus.getExecutorService().execute(this);
+        return true;
+    }
+
     @Override
     public void run() {
+        int current = worker;
         try {
             try {
                 while (true) {
                     PendingPost pendingPost = queue.poll(1000);
                     if (pendingPost == null) {
                         synchronized (this) {
+                            if (worker != current) {
+                                return;
+                            }
                             // Check again, this time in synchronized
                             pendingPost = queue.poll();
                             if (pendingPost == null) {
@@ -61,13 +88,21 @@ final class BackgroundPoster implements Runnable {
                             }
                         }
                     }
-                    eventBus.invokeSubscriber(pendingPost);
+                    pendingPost.eventBus.invokeSubscriber(pendingPost, this);
+                    if (worker != current) {
+                        // Replaced while stuck, the new worker owns the queue
+                        return;
+                    }
                 }
             } catch (InterruptedException e) {
                 Log.w("Event", Thread.currentThread().getName() + " was interruppted", e);
             }
         } finally {
-            executorRunning = false;
+            synchronized (this) {
+                if (worker == current) {
+                    executorRunning = false;
+                }
+            }
         }
     }
 
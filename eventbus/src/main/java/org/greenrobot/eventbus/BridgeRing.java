@@ -0,0 +1,346 @@
+package org.greenrobot.eventbus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * The ring file format of {@link ProcessBridge}: every process writes into its own memory-mapped ring (single
+ * writer), which the other processes map read-only. Only uses java.io and java.nio, without Android or bus classes,
+ * so two plain JVM processes can exchange records through it, e.g. to test the format on a desktop.
+ * <p/>
+ * Java gives no ordering guarantee for plain writes to a mapped file as seen by another process. So readers don't
+ * rely on the order in which the record and the write sequence become visible: every record carries its own sequence
+ * and a CRC32 of its bytes. A record that doesn't match yet is read again on the next drain.
+ */
+final class BridgeRing {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final String SUFFIX = ".ring";
+
+    private static final int MAGIC = 0x45425242;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_EPOCH = 8;
+    private static final int OFFSET_WRITE_SEQ = 16;
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * int length (8 byte aligned), byte priority, 3 bytes padding, int url length, int event length, long sequence of
+     * the record, int CRC32 of the header before it and of the url and event bytes, 4 bytes padding; followed by the
+     * url and event bytes.
+     */
+    private static final int RECORD_HEADER_SIZE = 32;
+    private static final int OFFSET_RECORD_SEQ = 16;
+    private static final int OFFSET_RECORD_CRC = 24;
+    private static final int PADDING = -1;
+    /**
+     * Drains a record may stay unreadable before the reader gives up on it.
+     */
+    private static final int MAX_RECORD_RETRIES = 100;
+
+    /**
+     * Receives the records of a peer's ring.
+     */
+    interface Receiver {
+        /**
+         * @param priority as written, not validated
+         */
+        void onRecord(String url, String json, int priority);
+
+        /**
+         * Records of the peer were lost, e.g. because the reader fell more than a ring behind.
+         */
+        void onSkipped(String message);
+    }
+
+    private BridgeRing() {
+    }
+
+    static File file(File directory, String name) {
+        return new File(directory, name + SUFFIX);
+    }
+
+    /**
+     * @return the name of the process owning the ring file, null if the file is not a ring
+     */
+    static String ownerOf(File file) {
+        String fileName = file.getName();
+        return fileName.endsWith(SUFFIX) ? fileName.substring(0, fileName.length() - SUFFIX.length()) : null;
+    }
+
+    /**
+     * @return the bytes a record with url and event of the given lengths takes in the ring
+     */
+    static int recordSize(int urlLength, int eventLength) {
+        return (RECORD_HEADER_SIZE + urlLength + eventLength + 7) & ~7;
+    }
+
+    /**
+     * CRC32 of the header fields before the CRC and of the url and event bytes.
+     */
+    private static int crc(CRC32 crc, byte[] record, int dataLength) {
+        crc.reset();
+        crc.update(record, 0, OFFSET_RECORD_CRC);
+        crc.update(record, RECORD_HEADER_SIZE, dataLength);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The ring of this process.
+     */
+    static final class Writer {
+        private final File file;
+        private final int capacity;
+        private final int maxRecordSize;
+        private final CRC32 crc = new CRC32();
+        private MappedByteBuffer ring;
+        private ByteBuffer writeBuffer;
+        private long writeSeq;
+        private byte[] record = new byte[256];
+
+        /**
+         * Creates or resets the ring file and starts a new epoch, which tells readers of a previous incarnation of the
+         * process to start over.
+         *
+         * @param capacity a single record may use at most a quarter of it
+         */
+        Writer(File file, int capacity) throws IOException {
+            this.file = file;
+            this.capacity = Math.max(4096, capacity) & ~7;
+            maxRecordSize = this.capacity / 4;
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(HEADER_SIZE + this.capacity);
+                ring = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + this.capacity);
+            } finally {
+                raf.close();
+            }
+            writeBuffer = ring.duplicate();
+            ring.putInt(OFFSET_MAGIC, 0);
+            ring.putInt(OFFSET_CAPACITY, this.capacity);
+            ring.putLong(OFFSET_EPOCH, System.nanoTime() ^ System.currentTimeMillis() << 20);
+            ring.putLong(OFFSET_WRITE_SEQ, 0);
+            ring.putInt(OFFSET_MAGIC, MAGIC);
+        }
+
+        int getMaxRecordSize() {
+            return maxRecordSize;
+        }
+
+        /**
+         * @return false if the record is larger than {@link #getMaxRecordSize()} or the writer was closed
+         */
+        synchronized boolean write(byte[] urlBytes, byte[] eventBytes, int priority) {
+            int length = recordSize(urlBytes.length, eventBytes.length);
+            if (ring == null || length > maxRecordSize) {
+                return false;
+            }
+            int position = (int) (writeSeq % capacity);
+            if (capacity - position < length) {
+                // Records never wrap, the rest of the ring is skipped
+                if (capacity - position >= RECORD_HEADER_SIZE) {
+                    putRecord(position, PADDING, 0, 0, 0);
+                }
+                writeSeq += capacity - position;
+                position = 0;
+            }
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            System.arraycopy(urlBytes, 0, record, RECORD_HEADER_SIZE, urlBytes.length);
+            System.arraycopy(eventBytes, 0, record, RECORD_HEADER_SIZE + urlBytes.length, eventBytes.length);
+            putRecord(position, length, priority, urlBytes.length, eventBytes.length);
+            writeSeq += length;
+            ring.putLong(OFFSET_WRITE_SEQ, writeSeq);
+            return true;
+        }
+
+        /**
+         * Completes the header of {@link #record}, whose url and event bytes are in place, and copies the record into
+         * the ring.
+         */
+        // Must be called in synchronized block
+        private void putRecord(int position, int length, int priority, int urlLength, int eventLength) {
+            ByteBuffer header = ByteBuffer.wrap(record, 0, RECORD_HEADER_SIZE);
+            header.putInt(0, length);
+            header.putInt(4, (priority & 0xff) << 24);
+            header.putInt(8, urlLength);
+            header.putInt(12, eventLength);
+            header.putLong(OFFSET_RECORD_SEQ, writeSeq);
+            header.putLong(OFFSET_RECORD_CRC, 0);
+            header.putInt(OFFSET_RECORD_CRC, crc(crc, record, urlLength + eventLength));
+            writeBuffer.position(HEADER_SIZE + position);
+            writeBuffer.put(record, 0, RECORD_HEADER_SIZE + urlLength + eventLength);
+        }
+
+        /**
+         * Invalidates the ring, drops the mapping, which is unmapped once collected as Java has no explicit unmap, and
+         * deletes the ring file. Readers still mapping the deleted file see the invalidated ring and go stale.
+         *
+         * @return false if the file could not be deleted
+         */
+        synchronized boolean close() {
+            if (ring != null) {
+                ring.putInt(OFFSET_MAGIC, 0);
+            }
+            ring = null;
+            writeBuffer = null;
+            return file.delete() || !file.exists();
+        }
+    }
+
+    /**
+     * Reads the ring of one peer, starting with the records written after it was opened.
+     */
+    static final class Reader {
+        private final Receiver receiver;
+        private final MappedByteBuffer ring;
+        private final ByteBuffer readBuffer;
+        private final int capacity;
+        private final int maxRecordSize;
+        private final CRC32 crc = new CRC32();
+        private long epoch;
+        private long readSeq;
+        private long published;
+        private int retries;
+        private byte[] buffer = new byte[256];
+        /**
+         * Set when the peer closed its ring or restarted with a different layout, the ring has to be opened again.
+         */
+        boolean stale;
+
+        private Reader(Receiver receiver, MappedByteBuffer ring, int capacity) {
+            this.receiver = receiver;
+            this.ring = ring;
+            this.readBuffer = ring.duplicate();
+            this.capacity = capacity;
+            this.maxRecordSize = capacity / 4;
+            epoch = ring.getLong(OFFSET_EPOCH);
+            // Only records written after opening are received
+            readSeq = ring.getLong(OFFSET_WRITE_SEQ);
+            published = readSeq;
+        }
+
+        /**
+         * @return the reader, or null if the ring is not initialized yet
+         */
+        static Reader open(File file, Receiver receiver) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                if (raf.length() < HEADER_SIZE) {
+                    return null;
+                }
+                FileChannel channel = raf.getChannel();
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                int capacity = header.getInt(OFFSET_CAPACITY);
+                if (header.getInt(OFFSET_MAGIC) != MAGIC || capacity <= 0 || raf.length() < HEADER_SIZE + capacity) {
+                    // Not initialized yet
+                    return null;
+                }
+                return new Reader(receiver, channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + capacity),
+                        capacity);
+            } finally {
+                raf.close();
+            }
+        }
+
+        /**
+         * Hands the records published since the last drain to the receiver.
+         *
+         * @return true if any record was received
+         */
+        boolean drain() {
+            if (ring.getInt(OFFSET_MAGIC) != MAGIC) {
+                // Closed, a restarted peer writes a new file
+                stale = true;
+                return false;
+            }
+            published = ring.getLong(OFFSET_WRITE_SEQ);
+            long currentEpoch = ring.getLong(OFFSET_EPOCH);
+            if (currentEpoch != epoch) {
+                // The peer process restarted without closing
+                if (ring.getInt(OFFSET_CAPACITY) != capacity) {
+                    stale = true;
+                    return false;
+                }
+                epoch = currentEpoch;
+                readSeq = published;
+                return false;
+            }
+            boolean received = false;
+            while (readSeq < published) {
+                if (published - readSeq > capacity - maxRecordSize) {
+                    receiver.onSkipped("fell behind a peer, skipped " + (published - readSeq) + " bytes");
+                    readSeq = published;
+                    break;
+                }
+                int position = (int) (readSeq % capacity);
+                if (capacity - position < RECORD_HEADER_SIZE) {
+                    // Too short for a record, the writer skipped it without a padding record
+                    readSeq += capacity - position;
+                    continue;
+                }
+                int offset = HEADER_SIZE + position;
+                int length = ring.getInt(offset);
+                int dataLength = length == PADDING ? 0 : length - RECORD_HEADER_SIZE;
+                if (dataLength < 0 || length > maxRecordSize || !copy(offset, length, dataLength)) {
+                    // Not completely visible yet, or overwritten by a writer that lapped us
+                    if (++retries < MAX_RECORD_RETRIES) {
+                        break;
+                    }
+                    receiver.onSkipped("skipped an unreadable record of a peer");
+                    readSeq = published;
+                    break;
+                }
+                retries = 0;
+                if (length == PADDING) {
+                    readSeq += capacity - position;
+                    continue;
+                }
+                readSeq += length;
+                ByteBuffer header = ByteBuffer.wrap(buffer, 0, RECORD_HEADER_SIZE);
+                int urlLength = header.getInt(8);
+                receiver.onRecord(new String(buffer, RECORD_HEADER_SIZE, urlLength, UTF8),
+                        new String(buffer, RECORD_HEADER_SIZE + urlLength, header.getInt(12), UTF8), buffer[4]);
+                received = true;
+            }
+            return received;
+        }
+
+        /**
+         * @return true if the last drain stopped at a record that was published but not completely visible yet
+         */
+        boolean isPending() {
+            return readSeq < published;
+        }
+
+        /**
+         * Copies the record at the read position into {@link #buffer}.
+         *
+         * @return true if the copy carries the expected sequence and a matching CRC
+         */
+        private boolean copy(int offset, int length, int dataLength) {
+            int size = RECORD_HEADER_SIZE + dataLength;
+            if (buffer.length < size) {
+                buffer = new byte[Math.max(size, buffer.length * 2)];
+            }
+            readBuffer.position(offset);
+            readBuffer.get(buffer, 0, size);
+            ByteBuffer header = ByteBuffer.wrap(buffer, 0, RECORD_HEADER_SIZE);
+            if (header.getInt(0) != length || header.getLong(OFFSET_RECORD_SEQ) != readSeq) {
+                return false;
+            }
+            int urlLength = header.getInt(8);
+            int eventLength = header.getInt(12);
+            if (urlLength < 0 || eventLength < 0 || urlLength + eventLength > dataLength) {
+                return false;
+            }
+            return header.getInt(OFFSET_RECORD_CRC) == crc(crc, buffer, urlLength + eventLength);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.greenrobot.eventbus;
+
+/**
+ * Snapshot of the result cache of a {@link org.greenrobot.eventbus.annotation.Cacheable} service method.
+ *
+ * @see EventBus#getCacheStats(EUrl)
+ */
+public final class CacheStats {
+    public final long hitCount;
+    public final long missCount;
+    /**
+     * Entries dropped because the cache was full or they expired; explicit invalidations are not counted.
+     */
+    public final long evictionCount;
+    public final int size;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, int size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                ", hitRate=" + hitRate() +
+                '}';
+    }
+}
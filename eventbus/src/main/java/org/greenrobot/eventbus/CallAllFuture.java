@@ -0,0 +1,179 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending results of {@link EventBus#callAll(android.content.Context, List, OnBatchCallBack, ThreadMode, long)}.
+ * Completes when all calls succeeded, or with the first failure, in which case the other calls are cancelled.
+ */
+public final class CallAllFuture implements Future<List<JsonObject>> {
+    private final EventBus eventBus;
+    private final List<CallRequest> requests;
+    private final OnBatchCallBack callBack;
+    private final ThreadMode callbackThreadMode;
+
+    private final JsonObject[] results;
+    private final CallFuture[] calls;
+    private int remaining;
+    private boolean done;
+    private boolean cancelled;
+    private CallRequest failedRequest;
+    private Exception error;
+
+    CallAllFuture(EventBus eventBus, List<CallRequest> requests, OnBatchCallBack callBack, ThreadMode callbackThreadMode) {
+        this.eventBus = eventBus;
+        this.requests = requests;
+        this.callBack = callBack;
+        this.callbackThreadMode = callbackThreadMode != null ? callbackThreadMode : ThreadMode.POSTING;
+        results = new JsonObject[requests.size()];
+        calls = new CallFuture[requests.size()];
+        remaining = requests.size();
+    }
+
+    OnMethodCallBack callBackFor(final int index) {
+        return new OnMethodCallBack() {
+            @Override
+            public void onSuccess(JsonObject msg) {
+                succeeded(index, msg);
+            }
+
+            @Override
+            public void onFailure(JsonObject msg, Exception e) {
+                fail(requests.get(index), e, false);
+            }
+        };
+    }
+
+    void started(int index, CallFuture call) {
+        synchronized (this) {
+            if (!done) {
+                calls[index] = call;
+                return;
+            }
+        }
+        call.cancel(true);
+    }
+
+    /**
+     * For an empty batch.
+     */
+    void succeedEmpty() {
+        synchronized (this) {
+            done = true;
+            notifyAll();
+        }
+        notifyCallBack();
+    }
+
+    private void succeeded(int index, JsonObject msg) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            results[index] = msg;
+            if (--remaining > 0) {
+                return;
+            }
+            done = true;
+            notifyAll();
+        }
+        notifyCallBack();
+    }
+
+    private boolean fail(CallRequest request, Exception e, boolean cancel) {
+        CallFuture[] running;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            cancelled = cancel;
+            failedRequest = request;
+            error = e;
+            running = calls.clone();
+            notifyAll();
+        }
+        for (CallFuture call : running) {
+            if (call != null) {
+                call.cancel(true);
+            }
+        }
+        notifyCallBack();
+        return true;
+    }
+
+    private void notifyCallBack() {
+        if (callBack == null) {
+            return;
+        }
+        eventBus.execute(callbackThreadMode, new Runnable() {
+            @Override
+            public void run() {
+                if (error == null) {
+                    callBack.onSuccess(resultList());
+                } else {
+                    callBack.onFailure(failedRequest, error);
+                }
+            }
+        });
+    }
+
+    private List<JsonObject> resultList() {
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return fail(null, new CancellationException("EventBus callAll was cancelled"), true);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized List<JsonObject> get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized List<JsonObject> get(long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    private List<JsonObject> report() throws ExecutionException {
+        if (error == null) {
+            return resultList();
+        } else if (cancelled) {
+            throw (CancellationException) error;
+        }
+        throw new ExecutionException("EventBus callAll failed at " + failedRequest, error);
+    }
+}
@@ -0,0 +1,217 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending result of {@link EventBus#callAsync(android.content.Context, EUrl, JsonObject, OnMethodCallBack, ThreadMode,
+ * long)}. The call completes when the service reports through its {@link OnMethodCallBack}, when a service method
+ * without a callback parameter returns, when it fails, times out or is cancelled; whichever comes first wins. The
+ * caller's callback is notified exactly once on the requested {@link ThreadMode}.
+ */
+public final class CallFuture implements Future<JsonObject> {
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final EventBus eventBus;
+    private final EUrl url;
+    private final JsonObject params;
+    private final OnMethodCallBack callBack;
+    private final ThreadMode callbackThreadMode;
+
+    private int state;
+    private JsonObject result;
+    private Exception error;
+    private Future<?> task;
+    private TimingWheel.Timeout timeout;
+    /**
+     * The single flight this call leads, abandoned when the call times out or is cancelled.
+     */
+    private SingleFlight.Flight flight;
+
+    /**
+     * Handed to the service method in place of the caller's callback.
+     */
+    final ServiceCallBack serviceCallBack = new ServiceCallBack();
+
+    CallFuture(EventBus eventBus, EUrl url, JsonObject params, OnMethodCallBack callBack, ThreadMode callbackThreadMode) {
+        this.eventBus = eventBus;
+        this.url = url;
+        this.params = params;
+        this.callBack = callBack;
+        this.callbackThreadMode = callbackThreadMode != null ? callbackThreadMode : ThreadMode.POSTING;
+    }
+
+    public EUrl getUrl() {
+        return url;
+    }
+
+    synchronized void start(Future<?> task, TimingWheel.Timeout timeout) {
+        if (state != PENDING) {
+            // Completed or cancelled before the call was even scheduled
+            task.cancel(false);
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            return;
+        }
+        this.task = task;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Called when this call became the leader of a single flight.
+     */
+    void leads(SingleFlight.Flight flight) {
+        Exception abandoned;
+        synchronized (this) {
+            if (state == PENDING || state == SUCCEEDED) {
+                this.flight = flight;
+                return;
+            }
+            abandoned = error;
+        }
+        flight.abandon(abandoned);
+    }
+
+    private void abandonFlight() {
+        SingleFlight.Flight flight;
+        synchronized (this) {
+            flight = this.flight;
+            this.flight = null;
+        }
+        if (flight != null) {
+            flight.abandon(error);
+        }
+    }
+
+    /**
+     * Completes the call with the result of a service method that doesn't take a callback.
+     */
+    void returned() {
+        complete(SUCCEEDED, null, null);
+    }
+
+    void timedOut(long timeoutMillis) {
+        if (complete(FAILED, params, new TimeoutException("EventBus Call Method " + url + " timed out after " + timeoutMillis + "ms"))) {
+            Future<?> task;
+            synchronized (this) {
+                task = this.task;
+            }
+            if (task != null) {
+                task.cancel(true);
+            }
+            abandonFlight();
+        }
+    }
+
+    private boolean complete(int newState, JsonObject msg, Exception e) {
+        TimingWheel.Timeout timeout;
+        synchronized (this) {
+            if (state != PENDING) {
+                return false;
+            }
+            state = newState;
+            result = msg;
+            error = e;
+            timeout = this.timeout;
+            notifyAll();
+        }
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        if (callBack != null) {
+            eventBus.execute(callbackThreadMode, new Runnable() {
+                @Override
+                public void run() {
+                    if (error == null) {
+                        callBack.onSuccess(result);
+                    } else {
+                        callBack.onFailure(result, error);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!complete(CANCELLED, params, new CancellationException("EventBus Call Method " + url + " was cancelled"))) {
+            return false;
+        }
+        Future<?> task;
+        synchronized (this) {
+            task = this.task;
+        }
+        if (task != null) {
+            task.cancel(mayInterruptIfRunning);
+        }
+        abandonFlight();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    @Override
+    public synchronized JsonObject get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized JsonObject get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+            TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    private JsonObject report() throws ExecutionException {
+        if (state == SUCCEEDED) {
+            return result;
+        } else if (state == CANCELLED) {
+            throw (CancellationException) error;
+        }
+        throw new ExecutionException(error);
+    }
+
+    final class ServiceCallBack implements OnMethodCallBack {
+        CallFuture future() {
+            return CallFuture.this;
+        }
+
+        @Override
+        public void onSuccess(JsonObject msg) {
+            complete(SUCCEEDED, msg, null);
+        }
+
+        @Override
+        public void onFailure(JsonObject msg, Exception e) {
+            complete(FAILED, msg, e != null ? e : new EventBusException("Service reported a failure for " + url));
+        }
+    }
+}
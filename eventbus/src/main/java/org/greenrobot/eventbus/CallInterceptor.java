@@ -0,0 +1,27 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Cross-cutting hook around every service call made through {@link EventBus#call(android.content.Context, EUrl,
+ * JsonObject, OnMethodCallBack)}. Interceptors are registered with
+ * {@link EventBusBuilder#addCallInterceptor(CallInterceptor)} and are called on the calling thread.
+ */
+public interface CallInterceptor {
+
+    /**
+     * Called before the service method is resolved and invoked, in registration order.
+     *
+     * @return false to reject the call; the caller's {@link OnMethodCallBack#onFailure(JsonObject, Exception)} is
+     * notified and {@link #afterCall} is not called
+     */
+    boolean beforeCall(EUrl url, JsonObject params);
+
+    /**
+     * Called after the service method returned or failed, in reverse registration order.
+     *
+     * @param costNanos time spent resolving and invoking the service method
+     * @param error     the failure, or null
+     */
+    void afterCall(EUrl url, JsonObject params, long costNanos, Throwable error);
+}
@@ -0,0 +1,33 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+/**
+ * One service call of a batch, see {@link EventBus#callAll(android.content.Context, java.util.List, OnBatchCallBack,
+ * ThreadMode, long)}.
+ */
+public class CallRequest {
+    private final EUrl url;
+    private final JsonObject params;
+
+    public CallRequest(EUrl url, JsonObject params) {
+        this.url = url;
+        this.params = params;
+    }
+
+    public EUrl getUrl() {
+        return url;
+    }
+
+    public JsonObject getParams() {
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return "CallRequest{" +
+                "url=" + url +
+                ", params=" + params +
+                '}';
+    }
+}
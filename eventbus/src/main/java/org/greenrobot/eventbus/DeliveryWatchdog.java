@@ -0,0 +1,156 @@
+package org.greenrobot.eventbus;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds BACKGROUND and ASYNC deliveries that run longer than their timeout, e.g. a subscriber blocking on I/O that
+ * holds up the single background thread for every url. Each worker thread publishes the start of its current delivery
+ * in its own slot; a check on the shared timer scans the slots while deliveries are in flight and reports each
+ * overdue delivery once, with a snapshot of the stack of its thread.
+ * <p/>
+ * Optionally the queue of a stuck background thread is handed to a new worker, see
+ * {@link BackgroundPoster#replaceWorker()}.
+ */
+final class DeliveryWatchdog {
+    private static final String TAG = EventBus.TAG;
+    private static final long CHECK_INTERVAL_NANOS = 100 * 1000000L;
+
+    private final long defaultTimeoutNanos;
+    private final boolean replaceStuckBackgroundWorker;
+    private final List<Slot> slots = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Slot> currentSlot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            Slot slot = new Slot(Thread.currentThread());
+            slots.add(slot);
+            return slot;
+        }
+    };
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+
+    DeliveryWatchdog(long defaultTimeoutNanos, boolean replaceStuckBackgroundWorker) {
+        this.defaultTimeoutNanos = defaultTimeoutNanos;
+        this.replaceStuckBackgroundWorker = replaceStuckBackgroundWorker;
+    }
+
+    /**
+     * Marks the start of a delivery on the current thread.
+     *
+     * @param eventBus the bus the delivery belongs to, which the stuck delivery is reported on
+     * @param poster   the background poster running the delivery, null for ASYNC
+     * @return the slot to pass to {@link #end(Slot)}, null if the delivery has no timeout
+     */
+    Slot begin(EventBus eventBus, Subscription subscription, BackgroundPoster poster) {
+        long timeoutNanos = subscription.subscriberMethod.timeoutNanos > 0 ? subscription.subscriberMethod.timeoutNanos
+                : defaultTimeoutNanos;
+        if (timeoutNanos <= 0) {
+            return null;
+        }
+        Slot slot = currentSlot.get();
+        slot.eventBus = eventBus;
+        slot.subscription = subscription;
+        slot.poster = poster;
+        slot.timeoutNanos = timeoutNanos;
+        slot.reported = false;
+        // Published last, the check only looks at slots with a start
+        slot.startNanos = System.nanoTime();
+        if (!checkScheduled.get() && checkScheduled.compareAndSet(false, true)) {
+            scheduleCheck();
+        }
+        return slot;
+    }
+
+    void end(Slot slot) {
+        slot.startNanos = 0;
+        slot.eventBus = null;
+        slot.subscription = null;
+        slot.poster = null;
+    }
+
+    private void scheduleCheck() {
+        EventBus.getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, CHECK_INTERVAL_NANOS, 0);
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        boolean inFlight = false;
+        for (Slot slot : slots) {
+            long started = slot.startNanos;
+            if (started == 0) {
+                if (!slot.thread.isAlive()) {
+                    slots.remove(slot);
+                }
+                continue;
+            }
+            inFlight = true;
+            EventBus eventBus = slot.eventBus;
+            Subscription subscription = slot.subscription;
+            BackgroundPoster poster = slot.poster;
+            if (eventBus != null && subscription != null && !slot.reported && now - started > slot.timeoutNanos
+                    && slot.startNanos == started) {
+                slot.reported = true;
+                report(slot.thread, eventBus, subscription, poster, now - started, slot.timeoutNanos);
+            }
+        }
+        if (inFlight) {
+            scheduleCheck();
+            return;
+        }
+        checkScheduled.set(false);
+        // A delivery may have started after its slot was scanned and seen the check as still scheduled
+        for (Slot slot : slots) {
+            if (slot.startNanos != 0) {
+                if (checkScheduled.compareAndSet(false, true)) {
+                    scheduleCheck();
+                }
+                break;
+            }
+        }
+    }
+
+    private void report(Thread thread, final EventBus eventBus, Subscription subscription, BackgroundPoster poster,
+                        long elapsedNanos, long timeoutNanos) {
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        boolean workerReplaced = replaceStuckBackgroundWorker && poster != null && poster.replaceWorker();
+        Object subscriber = subscription.getSubscriber();
+        final StuckDeliveryEvent event = new StuckDeliveryEvent(eventBus, subscription.subscriberMethod.eventType,
+                subscriber, thread.getName(), elapsedNanos / 1000000L, timeoutNanos / 1000000L, stackTrace,
+                workerReplaced);
+        Throwable snapshot = new Throwable("Stack of " + thread.getName());
+        snapshot.setStackTrace(stackTrace);
+        Log.w(TAG, event.toString(), snapshot);
+        // Keep the timer thread free of subscribers
+        eventBus.getExecutorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                eventBus.post(StuckDeliveryEvent.URL, event.toJson());
+            }
+        });
+    }
+
+    /**
+     * The delivery in flight on one worker thread. Only written by that thread, except for the reported flag.
+     */
+    static final class Slot {
+        final Thread thread;
+        volatile long startNanos;
+        volatile EventBus eventBus;
+        volatile Subscription subscription;
+        volatile BackgroundPoster poster;
+        volatile long timeoutNanos;
+        volatile boolean reported;
+
+        Slot(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
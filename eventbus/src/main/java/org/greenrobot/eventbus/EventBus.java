@@ -19,7 +19,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.XmlResourceParser;
-import android.os.Bundle;
 import android.os.Looper;
 import android.util.Log;
 
@@ -28,6 +27,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 
+import org.greenrobot.eventbus.annotation.Cacheable;
 import org.greenrobot.eventbus.annotation.Params;
 import org.greenrobot.eventbus.annotation.Subscribe;
 import org.xmlpull.v1.XmlPullParser;
@@ -36,14 +36,28 @@ import org.xmlpull.v1.XmlPullParserException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * EventBus is a central publish/subscribe event system for Android. Events are posted ({@link #post(String, JsonObject)}) to the
@@ -63,28 +77,87 @@ public class EventBus {
     public static String TAG = "EventBus";
 
     static volatile EventBus defaultInstance;
+    private static volatile TimingWheel timer;
 
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
     private static final EventBusBuilder DEFAULT_BUILDER = new EventBusBuilder();
     private static final Map<Class<?>, List<Class<?>>> eventTypesCache = new HashMap<>();
-
-    private final List<Service> serviceList = new ArrayList<>();
-    private final Map<String, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
-    private final Map<Object, List<String>> typesBySubscriber;
-
-    private final ThreadLocal<PostingThreadState> currentPostingThreadState = new ThreadLocal<PostingThreadState>() {
+    private static final int MAX_MATCH_CACHE_SIZE = 512;
+    private static final Comparator<Subscription> PRIORITY_ORDER = new Comparator<Subscription>() {
         @Override
-        protected PostingThreadState initialValue() {
-            return new PostingThreadState();
+        public int compare(Subscription lhs, Subscription rhs) {
+            int l = lhs.subscriberMethod.priority;
+            int r = rhs.subscriberMethod.priority;
+            return l > r ? -1 : (l == r ? 0 : 1);
         }
     };
 
+    /**
+     * Replaced as a whole under the bus lock; calls and opens read it without locking.
+     */
+    private volatile ServiceRegistry serviceRegistry;
+    private final Map<String, CopyOnWriteArrayList<Subscription>> subscriptionsByEventType;
+    private final Map<Object, Registration> registrationsBySubscriber;
+    private final Map<Object, Set<Registration>> registrationsByGroup = new HashMap<>();
+    /**
+     * Registry keys of weakly registered subscribers, which are used in registrationsBySubscriber and their
+     * subscriptions instead of the subscriber. Collected subscribers are enqueued in collectedSubscribers.
+     */
+    private final Map<Object, Subscription.WeakSubscriber> weakSubscribers = new WeakHashMap<>();
+    private final ReferenceQueue<Object> collectedSubscribers = new ReferenceQueue<>();
+    /**
+     * Set by the first weak registration. ReferenceQueue.poll() takes a lock on Android, so buses that never
+     * registered weakly don't poll on every post.
+     */
+    private volatile boolean hasWeakSubscribers;
+    /**
+     * Wildcard urls of subscriptionsByEventType, and the merged exact and wildcard matches per posted url. Both are
+     * only used once a wildcard subscription exists, so exact posts stay a single map lookup.
+     */
+    private final UrlTrie wildcardUrls = new UrlTrie();
+    private final Map<String, List<Subscription>> matchesByUrl = new HashMap<>();
+    private final Map<String, EventPriority> priorityByUrl;
+    /**
+     * Copy on write arrays, so posting reads them without locking.
+     */
+    private final Map<String, PostObserver[]> observersByUrl = new ConcurrentHashMap<>();
+
+    /**
+     * Shared by a bus and its children, so posts forwarded between them see the same posting state.
+     */
+    private final ThreadLocal<PostingThreadState> currentPostingThreadState;
+
+    /**
+     * Bus that receives the posts without subscribers in this bus, null if this is not a {@link #child()}.
+     */
+    private final EventBus parent;
+    /**
+     * Children posts are forwarded to, weakly referenced so unused children are still collected. Only iterated when
+     * not empty, so buses without children don't pay for forwarding.
+     */
+    private final CopyOnWriteArrayList<WeakReference<EventBus>> children = new CopyOnWriteArrayList<>();
     private final HandlerPoster mainThreadPoster;
     private final BackgroundPoster backgroundPoster;
     private final AsyncPoster asyncPoster;
     private final SubscriberMethodFinder subscriberMethodFinder;
+    private final DeliveryWatchdog watchdog;
     private final ExecutorService executorService;
+    private final ExecutorService callExecutorService;
 
     private final boolean logNoSubscriberMessages;
+    private final boolean logSubscriberExceptions;
+    private final boolean sendSubscriberExceptionEvent;
+    private final boolean throwSubscriberException;
+    private final long subscriberExceptionIntervalNanos;
+    private final int circuitFailureThreshold;
+    private final long circuitOpenNanos;
+    private final boolean depthFirstPosting;
+    /**
+     * Flattened at build time; null when no interceptors are registered so the hot path skips them entirely.
+     */
+    private final SubscriberInterceptor[] subscriberInterceptors;
+    private final CallInterceptor[] callInterceptors;
 
     /**
      * Convenience singleton for apps using a process-wide EventBus instance.
@@ -109,6 +182,7 @@ public class EventBus {
      */
     public static void clearCaches() {
         SubscriberMethodFinder.clearCaches();
+        ServiceRegistry.clearCaches();
         eventTypesCache.clear();
     }
 
@@ -121,14 +195,93 @@ public class EventBus {
     }
 
     EventBus(EventBusBuilder builder) {
+        parent = null;
+        currentPostingThreadState = new ThreadLocal<PostingThreadState>() {
+            @Override
+            protected PostingThreadState initialValue() {
+                return new PostingThreadState();
+            }
+        };
         subscriptionsByEventType = new HashMap<>();
-        typesBySubscriber = new HashMap<>();
-        mainThreadPoster = new HandlerPoster(this, Looper.getMainLooper(), 10);
+        registrationsBySubscriber = new HashMap<>();
+        priorityByUrl = new ConcurrentHashMap<>(builder.priorityByUrl);
+        mainThreadPoster = new HandlerPoster(this, Looper.getMainLooper(), builder.mainThreadRefreshRate);
         backgroundPoster = new BackgroundPoster(this);
         asyncPoster = new AsyncPoster(this);
         subscriberMethodFinder = new SubscriberMethodFinder();
+        watchdog = new DeliveryWatchdog(builder.stuckDeliveryTimeoutMillis * 1000000L,
+                builder.replaceStuckBackgroundWorker);
         logNoSubscriberMessages = builder.logNoSubscriberMessages;
+        logSubscriberExceptions = builder.logSubscriberExceptions;
+        sendSubscriberExceptionEvent = builder.sendSubscriberExceptionEvent;
+        throwSubscriberException = builder.throwSubscriberException;
+        subscriberExceptionIntervalNanos = builder.subscriberExceptionIntervalMillis * 1000000L;
+        circuitFailureThreshold = builder.circuitFailureThreshold;
+        circuitOpenNanos = builder.circuitOpenMillis * 1000000L;
+        serviceRegistry = builder.serviceRegistry != null ? builder.serviceRegistry : ServiceRegistry.EMPTY;
+        depthFirstPosting = builder.depthFirstPosting;
         executorService = builder.executorService;
+        callExecutorService = builder.callExecutorService != null ? builder.callExecutorService : executorService;
+        subscriberInterceptors = builder.subscriberInterceptors == null || builder.subscriberInterceptors.isEmpty() ? null
+                : builder.subscriberInterceptors.toArray(new SubscriberInterceptor[builder.subscriberInterceptors.size()]);
+        callInterceptors = builder.callInterceptors == null || builder.callInterceptors.isEmpty() ? null
+                : builder.callInterceptors.toArray(new CallInterceptor[builder.callInterceptors.size()]);
+    }
+
+    private EventBus(EventBus parent) {
+        this.parent = parent;
+        currentPostingThreadState = parent.currentPostingThreadState;
+        subscriptionsByEventType = new HashMap<>();
+        registrationsBySubscriber = new HashMap<>();
+        priorityByUrl = parent.priorityByUrl;
+        mainThreadPoster = parent.mainThreadPoster;
+        backgroundPoster = parent.backgroundPoster;
+        asyncPoster = parent.asyncPoster;
+        subscriberMethodFinder = parent.subscriberMethodFinder;
+        watchdog = parent.watchdog;
+        logNoSubscriberMessages = parent.logNoSubscriberMessages;
+        logSubscriberExceptions = parent.logSubscriberExceptions;
+        sendSubscriberExceptionEvent = parent.sendSubscriberExceptionEvent;
+        throwSubscriberException = parent.throwSubscriberException;
+        subscriberExceptionIntervalNanos = parent.subscriberExceptionIntervalNanos;
+        circuitFailureThreshold = parent.circuitFailureThreshold;
+        circuitOpenNanos = parent.circuitOpenNanos;
+        serviceRegistry = parent.serviceRegistry;
+        depthFirstPosting = parent.depthFirstPosting;
+        executorService = parent.executorService;
+        callExecutorService = parent.callExecutorService;
+        subscriberInterceptors = parent.subscriberInterceptors;
+        callInterceptors = parent.callInterceptors;
+    }
+
+    /**
+     * Creates a bus scoped to a screen or a flow. It only has its own subscriptions: posters, threads, interceptors,
+     * default priorities and the main thread refresh rate are the ones of this bus, and it starts with the services
+     * currently registered here. Creating one costs about as much as a few empty maps, and a child that is no longer
+     * referenced is simply garbage collected.
+     * <p/>
+     * Events are forwarded in both directions. Events posted to this bus are delivered to the subscribers of this bus
+     * first and then to those of its children, in the order the children were created. Events posted to the child
+     * that no subscriber of the child (or of its own children) receives are delivered in this bus as if posted here,
+     * except that they are not forwarded back to the child. Forwarded events are the same event instance and don't
+     * notify the {@link PostObserver}s of the receiving bus again. {@link #cancelEventDelivery(JsonObject)} also
+     * stops the forwarding to children.
+     * <p/>
+     * Deliveries the child queues on the shared posters still belong to the child, so failures and stuck deliveries
+     * of its subscribers are reported as {@link SubscriberExceptionEvent}s and {@link StuckDeliveryEvent}s of the
+     * child, whatever the thread mode.
+     */
+    public EventBus child() {
+        EventBus child = new EventBus(this);
+        children.add(new WeakReference<>(child));
+        return child;
+    }
+
+    /**
+     * @return the bus this bus was created from with {@link #child()}, or null
+     */
+    public EventBus getParent() {
+        return parent;
     }
 
     /**
@@ -138,14 +291,133 @@ public class EventBus {
      * Subscribers have event handling methods that must be annotated by {@link Subscribe}.
      * The {@link Subscribe} annotation also allows configuration like {@link
      * ThreadMode} and priority.
+     *
+     * @return a handle to unregister without looking up the subscriber
+     */
+    public Registration register(Object subscriber) {
+        return register(subscriber, null, false);
+    }
+
+    /**
+     * Registers the given subscriber tagged with a group, see {@link #unregisterGroup(Object)}.
+     */
+    public Registration register(Object subscriber, Object group) {
+        return register(subscriber, group, false);
+    }
+
+    /**
+     * Like {@link #register(Object)}, but the bus only keeps a weak reference to the subscriber. Once the subscriber
+     * is garbage collected, it stops receiving events and its subscriptions are removed the next time an event is
+     * posted, so a missed {@link #unregister(Object)} doesn't leak it. Calling {@link #unregister(Object)} is still
+     * preferred, because it stops delivery right away.
      */
-    public void register(Object subscriber) {
-        Class<?> subscriberClass = subscriber.getClass();
-        List<SubscriberMethod> subscriberMethods = subscriberMethodFinder.findSubscriberMethods(subscriberClass);
+    public Registration registerWeak(Object subscriber) {
+        return register(subscriber, null, true);
+    }
+
+    public Registration registerWeak(Object subscriber, Object group) {
+        return register(subscriber, group, true);
+    }
+
+    private Registration register(Object subscriber, Object group, boolean weak) {
+        List<SubscriberMethod> subscriberMethods = subscriberMethodFinder.findSubscriberMethods(subscriber.getClass());
         synchronized (this) {
-            for (SubscriberMethod subscriberMethod : subscriberMethods) {
-                subscribe(subscriber, subscriberMethod);
+            Registration registration = addRegistration(subscriber, group, weak);
+            attach(registration, subscriberMethods);
+            return registration;
+        }
+    }
+
+    /**
+     * Like {@link #register(Object)}, but scans the subscriber class on a background thread if it wasn't scanned
+     * before, so the first registration of a complex screen doesn't block the main thread. All subscriptions are
+     * attached at once when the scan is done; events posted before are not delivered to the subscriber. Unregistering
+     * before that cancels the registration.
+     */
+    public Registration registerAsync(Object subscriber) {
+        return registerAsync(subscriber, null);
+    }
+
+    public Registration registerAsync(final Object subscriber, Object group) {
+        final Class<?> subscriberClass = subscriber.getClass();
+        List<SubscriberMethod> cachedMethods = subscriberMethodFinder.findCachedSubscriberMethods(subscriberClass);
+        final Registration registration;
+        synchronized (this) {
+            registration = addRegistration(subscriber, group, false);
+            if (cachedMethods != null) {
+                attach(registration, cachedMethods);
+                return registration;
+            }
+        }
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<SubscriberMethod> subscriberMethods;
+                try {
+                    subscriberMethods = subscriberMethodFinder.findSubscriberMethods(subscriberClass);
+                } catch (EventBusException e) {
+                    Log.w(TAG, "Could not register " + subscriberClass, e);
+                    unregister(registration);
+                    return;
+                }
+                synchronized (EventBus.this) {
+                    if (registration.active) {
+                        attach(registration, subscriberMethods);
+                    }
+                }
+            }
+        });
+        return registration;
+    }
+
+    /**
+     * Scans the given subscriber classes on a background thread, for example during the splash screen, so their
+     * later registrations don't have to.
+     */
+    public void prewarm(final Class<?>... subscriberClasses) {
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Class<?> subscriberClass : subscriberClasses) {
+                    try {
+                        subscriberMethodFinder.findSubscriberMethods(subscriberClass);
+                    } catch (EventBusException e) {
+                        Log.w(TAG, "Could not prewarm " + subscriberClass, e);
+                    }
+                }
+            }
+        });
+    }
+
+    // Must be called in synchronized block
+    private Registration addRegistration(Object subscriber, Object group, boolean weak) {
+        if (isRegistered(subscriber)) {
+            throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered");
+        }
+        Object key = subscriber;
+        if (weak) {
+            Subscription.WeakSubscriber weakKey = new Subscription.WeakSubscriber(subscriber, collectedSubscribers);
+            weakSubscribers.put(subscriber, weakKey);
+            key = weakKey;
+            hasWeakSubscribers = true;
+        }
+        Registration registration = new Registration(this, key, group);
+        registrationsBySubscriber.put(key, registration);
+        if (group != null) {
+            Set<Registration> registrations = registrationsByGroup.get(group);
+            if (registrations == null) {
+                registrations = new HashSet<>();
+                registrationsByGroup.put(group, registrations);
             }
+            registrations.add(registration);
+        }
+        return registration;
+    }
+
+    // Must be called in synchronized block
+    private void attach(Registration registration, List<SubscriberMethod> subscriberMethods) {
+        for (SubscriberMethod subscriberMethod : subscriberMethods) {
+            registration.subscriptions.add(subscribe(registration.key, subscriberMethod));
         }
     }
 
@@ -157,6 +429,51 @@ public class EventBus {
      * @param xmId
      */
     public void register(Context context, int xmId) {
+        List<Service> services = ServiceRegistry.manifest(context, xmId);
+        synchronized (this) {
+            serviceRegistry = serviceRegistry.plus(xmId, services);
+        }
+        Log.d(TAG, "Length:" + services.size() + " Service：" + services.toString());
+    }
+
+    /**
+     * Replaces the services registered from the given xml resource by its current content, e.g. after a dynamic
+     * feature module was updated. Unchanged services and methods are kept together with their caches; changed ones
+     * are swapped in and services no longer declared are removed, all at once for concurrent callers. Other buses
+     * sharing the old version keep it until they reload too.
+     */
+    public void reload(Context context, int xmId) {
+        List<Service> services = ServiceRegistry.reparse(context, xmId);
+        synchronized (this) {
+            serviceRegistry = serviceRegistry.replace(xmId, services);
+        }
+        Log.d(TAG, "Reloaded Length:" + services.size() + " Service：" + services.toString());
+    }
+
+    /**
+     * Removes all services registered from the given xml resource.
+     */
+    public void unregisterServices(int xmId) {
+        synchronized (this) {
+            serviceRegistry = serviceRegistry.without(xmId);
+        }
+    }
+
+    /**
+     * @return the current services of this bus, e.g. to share them with another bus through
+     * {@link EventBusBuilder#serviceRegistry(ServiceRegistry)}
+     */
+    public ServiceRegistry getServiceRegistry() {
+        return serviceRegistry;
+    }
+
+    /**
+     * Parses and validates the services of the xml resource without registering them.
+     *
+     * @throws EventBusException if the xml is invalid or can't be read
+     */
+    static List<Service> parseServices(Context context, int xmId) {
+        List<Service> services = new ArrayList<>();
         XmlResourceParser parser = context.getResources().getXml(xmId);
         try {
             Service service = null;
@@ -184,6 +501,8 @@ public class EventBus {
                             if (!isExistPublicStaticMethod(service.getClazz(), method.getName())) {
                                 throw new EventBusException("Service.Method[" + method + "] not find public static method, the method name is " + method.getName());
                             }
+                            method.cache = createServiceCache(parser, service.getClazz(), method.getName());
+                            method.singleFlight = createSingleFlight(parser, service.getClazz(), method.getName());
                         } else if (parser.getName().equalsIgnoreCase("data")) {
                             data = new Method.Data(
                                     parser.getAttributeValue(null, "id"),
@@ -209,10 +528,10 @@ public class EventBus {
                         break;
                     case XmlPullParser.END_TAG://判断当前事件是否是标签元素结束事件
                         if (parser.getName().equalsIgnoreCase("service")) {
-                            if (serviceList.contains(service)) break;
+                            if (services.contains(service)) break;
 
-                            if (findServiceByUrl(service.getUrl()) == null) {
-                                serviceList.add(service);
+                            if (findServiceByUrl(services, service.getUrl()) == null) {
+                                services.add(service);
                                 service = null;
                             } else {
                                 throw new EventBusException("Service[" + service + "] the url is already registered");
@@ -259,16 +578,16 @@ public class EventBus {
                 event = parser.next();//进入下一个元素
             }
         } catch (XmlPullParserException e) {
-            e.printStackTrace();
+            throw new EventBusException("Service xml " + xmId + " could not be parsed", e);
         } catch (ClassNotFoundException e) {
             throw new EventBusException(e);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new EventBusException("Service xml " + xmId + " could not be read", e);
         }
-        Log.d(TAG, "Length:" + serviceList.size() + " Service：" + serviceList.toString());
+        return services;
     }
 
-    private boolean isExistPublicStaticMethod(Class<?> clazz, String name) throws EventBusException {
+    private static boolean isExistPublicStaticMethod(Class<?> clazz, String name) throws EventBusException {
         if (clazz != null && !clazz.isAnnotationPresent(org.greenrobot.eventbus.annotation.Service.class)) {
             throw new EventBusException("Class[" + clazz.getName() + "] not add Service Annotation");
         }
@@ -291,18 +610,90 @@ public class EventBus {
         return false;
     }
 
+    /**
+     * @throws EventBusException if the method is cacheable but has no {@link OnMethodCallBack} param, because only
+     *                           results delivered through the callback can be cached
+     */
+    private static ServiceCache createServiceCache(XmlResourceParser parser, Class<?> clazz, String name) {
+        ServiceCache cache = null;
+        if (parser.getAttributeBooleanValue(null, "cache", false)) {
+            cache = new ServiceCache(parser.getAttributeIntValue(null, "cacheSize", 32),
+                    parser.getAttributeIntValue(null, "cacheTtl", 0));
+        } else {
+            Cacheable cacheable = findStaticMethodAnnotation(clazz, name, Cacheable.class);
+            if (cacheable != null) {
+                cache = new ServiceCache(cacheable.size(), cacheable.ttlMillis());
+            }
+        }
+        if (cache != null && !hasCallBackParam(clazz, name)) {
+            throw new EventBusException("Service.Method[" + name + "] is cacheable but takes no OnMethodCallBack to"
+                    + " deliver its result");
+        }
+        return cache;
+    }
+
+    /**
+     * @return true if every public static method of the name takes an {@link OnMethodCallBack}
+     */
+    private static boolean hasCallBackParam(Class<?> clazz, String name) {
+        boolean found = false;
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            for (java.lang.reflect.Method item : c.getDeclaredMethods()) {
+                if (!name.equals(item.getName()) || !Modifier.isStatic(item.getModifiers())
+                        || !Modifier.isPublic(item.getModifiers())) {
+                    continue;
+                }
+                boolean callBack = false;
+                for (Class<?> type : item.getParameterTypes()) {
+                    callBack |= OnMethodCallBack.class.isAssignableFrom(type);
+                }
+                if (!callBack) {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private static SingleFlight createSingleFlight(XmlResourceParser parser, Class<?> clazz, String name) {
+        if (parser.getAttributeBooleanValue(null, "singleFlight", false)) {
+            return new SingleFlight(parser.getAttributeIntValue(null, "singleFlightTimeout",
+                    (int) SingleFlight.DEFAULT_TIMEOUT_MILLIS));
+        }
+        org.greenrobot.eventbus.annotation.SingleFlight singleFlight = findStaticMethodAnnotation(clazz, name,
+                org.greenrobot.eventbus.annotation.SingleFlight.class);
+        return singleFlight != null ? new SingleFlight(singleFlight.timeoutMillis()) : null;
+    }
+
+    private static <A extends Annotation> A findStaticMethodAnnotation(Class<?> clazz, String name, Class<A> annotationType) {
+        while (clazz != null) {
+            for (java.lang.reflect.Method item : clazz.getDeclaredMethods()) {
+                A annotation = item.getAnnotation(annotationType);
+                if (annotation != null && name.equals(item.getName()) && Modifier.isStatic(item.getModifiers())) {
+                    return annotation;
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+        return null;
+    }
+
     // Must be called in synchronized block
-    private void subscribe(Object subscriber, SubscriberMethod subscriberMethod) {
+    private Subscription subscribe(Object subscriber, SubscriberMethod subscriberMethod) {
         String eventType = subscriberMethod.eventType;
         Subscription newSubscription = new Subscription(subscriber, subscriberMethod);
         CopyOnWriteArrayList<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
         if (subscriptions == null) {
             subscriptions = new CopyOnWriteArrayList<>();
             subscriptionsByEventType.put(eventType, subscriptions);
+            if (UrlTrie.isPattern(eventType)) {
+                wildcardUrls.add(eventType);
+            }
         } else {
             if (subscriptions.contains(newSubscription)) {
-                throw new EventBusException("Subscriber " + subscriber.getClass() + " already registered to event "
-                        + eventType);
+                throw new EventBusException("Subscriber " + newSubscription.getSubscriber().getClass()
+                        + " already registered to event " + eventType);
             }
         }
 
@@ -313,60 +704,222 @@ public class EventBus {
                 break;
             }
         }
+        invalidateMatches(eventType);
+        return newSubscription;
+    }
 
-        List<String> subscribedEvents = typesBySubscriber.get(subscriber);
-        if (subscribedEvents == null) {
-            subscribedEvents = new ArrayList<>();
-            typesBySubscriber.put(subscriber, subscribedEvents);
-        }
-        subscribedEvents.add(eventType);
+    /**
+     * Resizes the time slices of MAIN thread delivery to the given display refresh rate. Applies to the parent and
+     * all children of a bus, which share the main thread queue.
+     */
+    public void setMainThreadRefreshRate(float refreshRate) {
+        mainThreadPoster.setRefreshRate(refreshRate);
     }
 
     public synchronized boolean isRegistered(Object subscriber) {
-        return typesBySubscriber.containsKey(subscriber);
+        return registrationsBySubscriber.containsKey(subscriber) || weakSubscribers.containsKey(subscriber);
     }
 
     /**
-     * Only updates subscriptionsByEventType, not typesBySubscriber! Caller must update typesBySubscriber.
+     * Removes the subscriptions of the given registrations with a single copy of each affected url's subscription
+     * array. Must be called in synchronized block.
      */
-    private void unSubscribeByEventType(Object subscriber, String eventType) {
-        List<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
-        if (subscriptions != null) {
-            int size = subscriptions.size();
-            for (int i = 0; i < size; i++) {
-                Subscription subscription = subscriptions.get(i);
-                if (subscription.subscriber == subscriber) {
-                    subscription.active = false;
-                    subscriptions.remove(i);
-                    i--;
-                    size--;
+    private void removeRegistrations(Collection<Registration> registrations) {
+        Map<String, Set<Subscription>> removedByUrl = new HashMap<>();
+        for (Registration registration : registrations) {
+            if (!registration.active) {
+                continue;
+            }
+            registration.active = false;
+            registrationsBySubscriber.remove(registration.key);
+            if (registration.key instanceof Subscription.WeakSubscriber) {
+                Object subscriber = ((Subscription.WeakSubscriber) registration.key).get();
+                if (subscriber != null) {
+                    weakSubscribers.remove(subscriber);
+                }
+            }
+            if (registration.group != null) {
+                Set<Registration> group = registrationsByGroup.get(registration.group);
+                if (group != null && group.remove(registration) && group.isEmpty()) {
+                    registrationsByGroup.remove(registration.group);
+                }
+            }
+            for (Subscription subscription : registration.subscriptions) {
+                subscription.active = false;
+                String eventType = subscription.subscriberMethod.eventType;
+                Set<Subscription> removed = removedByUrl.get(eventType);
+                if (removed == null) {
+                    // Subscription equality is by subscriber and method; identity is cheaper and exact
+                    removed = Collections.newSetFromMap(new IdentityHashMap<Subscription, Boolean>());
+                    removedByUrl.put(eventType, removed);
+                }
+                removed.add(subscription);
+            }
+        }
+        for (Map.Entry<String, Set<Subscription>> entry : removedByUrl.entrySet()) {
+            String eventType = entry.getKey();
+            List<Subscription> subscriptions = subscriptionsByEventType.get(eventType);
+            if (subscriptions == null) {
+                continue;
+            }
+            subscriptions.removeAll(entry.getValue());
+            if (subscriptions.isEmpty() && UrlTrie.isPattern(eventType)) {
+                subscriptionsByEventType.remove(eventType);
+                wildcardUrls.remove(eventType);
+            }
+            invalidateMatches(eventType);
+        }
+    }
+
+    // Must be called in synchronized block
+    private void invalidateMatches(String eventType) {
+        if (UrlTrie.isPattern(eventType)) {
+            matchesByUrl.clear();
+        } else {
+            matchesByUrl.remove(eventType);
+        }
+    }
+
+    /**
+     * Subscriptions for the posted url, ordered by priority. Must be called in synchronized block.
+     */
+    private List<Subscription> findSubscriptions(String url) {
+        if (wildcardUrls.isEmpty()) {
+            return subscriptionsByEventType.get(url);
+        }
+        List<Subscription> matches = matchesByUrl.get(url);
+        if (matches == null) {
+            List<String> patterns = new ArrayList<>();
+            wildcardUrls.match(url, patterns);
+            List<Subscription> exact = subscriptionsByEventType.get(url);
+            if (patterns.isEmpty()) {
+                matches = exact != null ? exact : Collections.<Subscription>emptyList();
+            } else {
+                matches = exact != null ? new ArrayList<>(exact) : new ArrayList<Subscription>();
+                for (String pattern : patterns) {
+                    matches.addAll(subscriptionsByEventType.get(pattern));
                 }
+                // Stable sort: keeps registration order within the same priority
+                Collections.sort(matches, PRIORITY_ORDER);
+                matches = Collections.unmodifiableList(matches);
+            }
+            if (matchesByUrl.size() >= MAX_MATCH_CACHE_SIZE) {
+                matchesByUrl.clear();
             }
+            matchesByUrl.put(url, matches);
         }
+        return matches;
     }
 
     /**
      * Unregisters the given subscriber from all event classes.
      */
     public synchronized void unregister(Object subscriber) {
-        List<String> subscribedTypes = typesBySubscriber.get(subscriber);
-        if (subscribedTypes != null) {
-            for (String eventType : subscribedTypes) {
-                unSubscribeByEventType(subscriber, eventType);
-            }
-            typesBySubscriber.remove(subscriber);
+        Subscription.WeakSubscriber weakKey = weakSubscribers.get(subscriber);
+        Registration registration = registrationsBySubscriber.get(weakKey != null ? weakKey : subscriber);
+        if (registration != null) {
+            removeRegistrations(Collections.singletonList(registration));
         } else {
             Log.w(TAG, "Subscriber to unregister was not registered before: " + subscriber.getClass());
         }
     }
 
     /**
-     * Posts the given event to the event bus.
+     * Removes the subscriptions of the given registration. Does nothing if they have already been removed.
+     */
+    public synchronized void unregister(Registration registration) {
+        if (registration.eventBus != this) {
+            throw new EventBusException("Registration belongs to another EventBus");
+        }
+        removeRegistrations(Collections.singletonList(registration));
+    }
+
+    /**
+     * Unregisters all subscribers registered with the given group tag at once, copying each affected url's
+     * subscriptions only once.
+     */
+    public synchronized void unregisterGroup(Object group) {
+        Set<Registration> registrations = registrationsByGroup.remove(group);
+        if (registrations != null) {
+            removeRegistrations(registrations);
+        }
+    }
+
+    /**
+     * Removes the subscriptions of weakly registered subscribers that were garbage collected. Only polls the queue
+     * when nothing was collected.
+     */
+    private void removeCollectedSubscribers() {
+        if (!hasWeakSubscribers) {
+            return;
+        }
+        Reference<?> key = collectedSubscribers.poll();
+        if (key == null) {
+            return;
+        }
+        synchronized (this) {
+            List<Registration> collected = new ArrayList<>();
+            do {
+                Registration registration = registrationsBySubscriber.get(key);
+                if (registration != null) {
+                    collected.add(registration);
+                }
+            } while ((key = collectedSubscribers.poll()) != null);
+            removeRegistrations(collected);
+        }
+    }
+
+    /**
+     * Posts the given event to the event bus, using the default priority of the url.
+     *
+     * @see #setDefaultPriority(String, EventPriority)
      */
     public void post(String url, JsonObject event) {
+        EventPriority priority = priorityByUrl.isEmpty() ? null : priorityByUrl.get(url);
+        post(url, event, priority != null ? priority : EventPriority.NORMAL);
+    }
+
+    /**
+     * Posts the given event to the event bus. Deliveries that have to wait in a MAIN, BACKGROUND or ASYNC queue
+     * overtake queued deliveries of a lower priority. A null priority is {@link EventPriority#NORMAL}.
+     */
+    public void post(String url, JsonObject event, EventPriority priority) {
+        post(url, event, priority, null);
+    }
+
+    /**
+     * Posts like {@link #post(String, JsonObject, EventPriority)} without notifying the given observer, e.g. the
+     * {@link ProcessBridge} that received the event, so it isn't sent back.
+     */
+    void post(String url, JsonObject event, EventPriority priority, PostObserver source) {
+        if (priority == null) {
+            priority = EventPriority.NORMAL;
+        }
+        if (!observersByUrl.isEmpty()) {
+            PostObserver[] observers = observersByUrl.get(url);
+            if (observers != null) {
+                for (PostObserver observer : observers) {
+                    if (observer != source) {
+                        observer.onPost(url, event, priority);
+                    }
+                }
+            }
+        }
+        postUnobserved(url, event, priority);
+    }
+
+    /**
+     * Posts like {@link #post(String, JsonObject, EventPriority)} without notifying the {@link PostObserver}s, so
+     * events replayed from a journal aren't journaled or bridged again.
+     */
+    void postUnobserved(String url, JsonObject event, EventPriority priority) {
         PostingThreadState postingState = currentPostingThreadState.get();
-        List<PostEvent> eventQueue = postingState.eventQueue;
-        eventQueue.add(new PostEvent(url, event));
+        ArrayDeque<PostEvent> eventQueue = postingState.eventQueue;
+        if (postingState.isPosting && depthFirstPosting) {
+            postingState.nestedPosts.add(new PostEvent(this, url, event, priority));
+            return;
+        }
+        eventQueue.add(new PostEvent(this, url, event, priority));
 
         if (!postingState.isPosting) {
             postingState.isMainThread = Looper.getMainLooper() == Looper.myLooper();
@@ -375,10 +928,16 @@ public class EventBus {
                 throw new EventBusException("Internal error. Abort state was not reset");
             }
             try {
-                while (!eventQueue.isEmpty()) {
-                    postSingleEvent(eventQueue.remove(0), postingState);
+                PostEvent post;
+                while ((post = eventQueue.poll()) != null) {
+                    // The posting state is shared with parent and child buses, each post goes to the bus it was made on
+                    post.eventBus.postSingleEvent(post, postingState);
+                    if (!postingState.nestedPosts.isEmpty()) {
+                        postingState.queueNestedPostsFirst();
+                    }
                 }
             } finally {
+                postingState.queueNestedPostsFirst();
                 postingState.isPosting = false;
                 postingState.isMainThread = false;
             }
@@ -386,22 +945,376 @@ public class EventBus {
     }
 
     /**
-     * call the register service by the event bus.
+     * Posts the event after the given delay (10ms resolution). The post happens on a background thread of the bus.
+     *
+     * @return a handle to cancel the post
+     */
+    public ScheduledPost postDelayed(String url, JsonObject event, long delayMillis) {
+        return schedulePost(url, event, delayMillis, 0);
+    }
+
+    /**
+     * Posts the same event repeatedly at a fixed rate, e.g. for heartbeats, until the returned handle is cancelled.
+     */
+    public ScheduledPost postAtFixedRate(String url, JsonObject event, long initialDelayMillis, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + periodMillis);
+        }
+        return schedulePost(url, event, initialDelayMillis, periodMillis);
+    }
+
+    private ScheduledPost schedulePost(final String url, final JsonObject event, long delayMillis, long periodMillis) {
+        final Runnable post = new Runnable() {
+            @Override
+            public void run() {
+                post(url, event);
+            }
+        };
+        // Keep the timer thread free for other deadlines
+        TimingWheel.Timeout timeout = getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                executorService.execute(post);
+            }
+        }, TimeUnit.MILLISECONDS.toNanos(delayMillis), TimeUnit.MILLISECONDS.toNanos(periodMillis));
+        return new ScheduledPost(url, timeout);
+    }
+
+    /**
+     * Posts the event to all subscribers of the url and gathers what they return, e.g. to ask every module which of
+     * them can handle a deep link. Subscriber methods reply by returning a JsonObject; other or null returns count as
+     * answered without a reply.
+     * <p/>
+     * POSTING subscribers answer on the calling thread before this method returns. All others are queued to their
+     * poster, even when called from the main or a background thread: MAIN subscribers answer on the main thread,
+     * BACKGROUND subscribers one at a time on the background thread, in order with the posted events, and ASYNC
+     * subscribers in parallel. Filters apply, throttling and debouncing don't: a request expects every subscriber to
+     * answer. The request is not seen by {@link EventJournal}s or {@link ProcessBridge}s.
+     *
+     * @param timeoutMillis completes with the replies received so far after this time; 0 to wait for all. It does not
+     *                      bound the POSTING subscribers, which have answered by the time the call returns.
+     */
+    public ReplyFuture postAndCollect(String url, JsonObject event, long timeoutMillis) {
+        return postAndCollect(url, event, timeoutMillis, null, null);
+    }
+
+    /**
+     * @param callBack           optional, notified once with the replies when all subscribers answered or the timeout
+     *                           passed
+     * @param callbackThreadMode the thread callBack is notified on
+     */
+    public ReplyFuture postAndCollect(String url, JsonObject event, long timeoutMillis, OnCollectCallBack callBack,
+                                      ThreadMode callbackThreadMode) {
+        removeCollectedSubscribers();
+        List<Subscription> subscriptions;
+        synchronized (this) {
+            subscriptions = findSubscriptions(url);
+        }
+        List<Subscription> receivers = new ArrayList<>();
+        if (subscriptions != null) {
+            for (Subscription subscription : subscriptions) {
+                EventFilter filter = subscription.subscriberMethod.filter;
+                if (filter != null) {
+                    Object subscriber = subscription.getSubscriber();
+                    if (subscriber == null || !filter.accept(subscriber, event)) {
+                        continue;
+                    }
+                }
+                receivers.add(subscription);
+            }
+        }
+        final ReplyFuture future = new ReplyFuture(this, url, receivers.size(), callBack, callbackThreadMode);
+        if (receivers.isEmpty()) {
+            if (logNoSubscriberMessages) {
+                Log.d(TAG, "No subscribers registered for event " + url);
+            }
+            future.timedOut();
+            return future;
+        }
+        if (timeoutMillis > 0) {
+            final Runnable timedOut = new Runnable() {
+                @Override
+                public void run() {
+                    future.timedOut();
+                }
+            };
+            // Keep the timer thread free: a POSTING callBack is notified on the thread completing the future
+            future.start(getTimer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executorService.execute(timedOut);
+                }
+            }, TimeUnit.MILLISECONDS.toNanos(timeoutMillis), 0));
+        }
+        EventPriority priority = priorityByUrl.isEmpty() ? null : priorityByUrl.get(url);
+        if (priority == null) {
+            priority = EventPriority.NORMAL;
+        }
+        for (int i = 0; i < receivers.size(); i++) {
+            Subscription subscription = receivers.get(i);
+            PendingPost pendingPost = PendingPost.obtainPendingPost(this, subscription, url, event, priority, future, i);
+            switch (subscription.subscriberMethod.threadMode) {
+                case POSTING:
+                    invokeSubscriber(pendingPost);
+                    break;
+                case MAIN:
+                    mainThreadPoster.enqueue(pendingPost);
+                    break;
+                case BACKGROUND:
+                    backgroundPoster.enqueue(pendingPost);
+                    break;
+                case ASYNC:
+                    asyncPoster.enqueue(pendingPost);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown thread mode: " + subscription.subscriberMethod.threadMode);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Called by a subscriber to stop the delivery of the event it is handling to subscribers of a lower priority.
+     * Only allowed in {@link ThreadMode#POSTING} subscribers, while handling the event on the posting thread.
+     */
+    public void cancelEventDelivery(JsonObject event) {
+        PostingThreadState postingState = currentPostingThreadState.get();
+        if (!postingState.isPosting) {
+            throw new EventBusException(
+                    "This method may only be called from inside event handling methods on the posting thread");
+        } else if (event == null) {
+            throw new EventBusException("Event may not be null");
+        } else if (postingState.event == null || postingState.event.event != event) {
+            throw new EventBusException("Only the currently handled event may be aborted");
+        } else if (postingState.subscription.subscriberMethod.threadMode != ThreadMode.POSTING) {
+            throw new EventBusException("Only POSTING event handlers may abort the incoming event");
+        }
+        postingState.canceled = true;
+    }
+
+    void addPostObserver(String url, PostObserver observer) {
+        synchronized (observersByUrl) {
+            PostObserver[] observers = observersByUrl.get(url);
+            int size = observers == null ? 0 : observers.length;
+            PostObserver[] newObservers = new PostObserver[size + 1];
+            if (observers != null) {
+                System.arraycopy(observers, 0, newObservers, 0, size);
+            }
+            newObservers[size] = observer;
+            observersByUrl.put(url, newObservers);
+        }
+    }
+
+    void removePostObserver(String url, PostObserver observer) {
+        synchronized (observersByUrl) {
+            PostObserver[] observers = observersByUrl.get(url);
+            if (observers == null) {
+                return;
+            }
+            List<PostObserver> remaining = new ArrayList<>(observers.length);
+            for (PostObserver item : observers) {
+                if (item != observer) {
+                    remaining.add(item);
+                }
+            }
+            if (remaining.isEmpty()) {
+                observersByUrl.remove(url);
+            } else {
+                observersByUrl.put(url, remaining.toArray(new PostObserver[remaining.size()]));
+            }
+        }
+    }
+
+    /**
+     * Sets the priority used by {@link #post(String, JsonObject)} for the given url; null restores
+     * {@link EventPriority#NORMAL}.
+     */
+    public void setDefaultPriority(String url, EventPriority priority) {
+        if (priority == null) {
+            priorityByUrl.remove(url);
+        } else {
+            priorityByUrl.put(url, priority);
+        }
+    }
+
+    /**
+     * call the register service by the event bus. Failures are reported to {@link OnMethodCallBack#onFailure}.
      */
     public void call(Context context, EUrl url, JsonObject jsonObject, OnMethodCallBack callBack) {
+        callService(context, url, jsonObject, callBack);
+    }
+
+    /**
+     * @return true if the service method received the callBack and is responsible for completing it
+     */
+    boolean callService(Context context, EUrl url, JsonObject jsonObject, OnMethodCallBack callBack) {
+        CallInterceptor[] interceptors = callInterceptors;
+        if (interceptors == null) {
+            try {
+                return invokeService(context, url, jsonObject, callBack);
+            } catch (Exception e) {
+                notifyCallFailure(url, jsonObject, callBack, e);
+                return false;
+            }
+        }
+
+        for (CallInterceptor interceptor : interceptors) {
+            if (!interceptor.beforeCall(url, jsonObject)) {
+                if (callBack != null) {
+                    callBack.onFailure(jsonObject, new EventBusException("EventBus Call Method, but rejected by " + interceptor + " for " + url));
+                }
+                return false;
+            }
+        }
+        Throwable error = null;
+        long started = System.nanoTime();
+        try {
+            return invokeService(context, url, jsonObject, callBack);
+        } catch (Exception e) {
+            error = e instanceof InvocationTargetException ? e.getCause() : e;
+            notifyCallFailure(url, jsonObject, callBack, e);
+            return false;
+        } finally {
+            long cost = System.nanoTime() - started;
+            for (int i = interceptors.length - 1; i >= 0; i--) {
+                interceptors[i].afterCall(url, jsonObject, cost, error);
+            }
+        }
+    }
+
+    private void notifyCallFailure(EUrl url, JsonObject jsonObject, OnMethodCallBack callBack, Exception e) {
+        Exception failure = e;
+        if (e instanceof InvocationTargetException) {
+            Throwable cause = e.getCause();
+            failure = cause instanceof Exception ? (Exception) cause : new EventBusException(cause);
+        }
+        Log.w(TAG, "EventBus Call Method " + url + " failed", failure);
+        if (callBack != null) {
+            callBack.onFailure(jsonObject, failure);
+        }
+    }
+
+    /**
+     * Calls the service on the call executor (see {@link EventBusBuilder#callExecutorService(ExecutorService)}) and
+     * returns immediately.
+     *
+     * @param callBack           optional, notified once with the result, the failure, a timeout or the cancellation
+     * @param callbackThreadMode the thread callBack is notified on
+     * @param timeoutMillis      fails the call with a {@link java.util.concurrent.TimeoutException} and interrupts the
+     *                           service if it takes longer; 0 to wait forever
+     */
+    public CallFuture callAsync(final Context context, final EUrl url, final JsonObject params, OnMethodCallBack callBack,
+                                ThreadMode callbackThreadMode, final long timeoutMillis) {
+        final CallFuture future = new CallFuture(this, url, params, callBack, callbackThreadMode);
+        Future<?> task = callExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!callService(context, url, params, future.serviceCallBack)) {
+                    future.returned();
+                }
+            }
+        });
+        TimingWheel.Timeout timeout = null;
+        if (timeoutMillis > 0) {
+            final Runnable timedOut = new Runnable() {
+                @Override
+                public void run() {
+                    future.timedOut(timeoutMillis);
+                }
+            };
+            // Keep the timer thread free: a POSTING callBack is notified on the thread completing the future
+            timeout = getTimer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executorService.execute(timedOut);
+                }
+            }, TimeUnit.MILLISECONDS.toNanos(timeoutMillis), 0);
+        }
+        future.start(task, timeout);
+        return future;
+    }
+
+    /**
+     * Runs independent service calls in parallel on the call executor, so the batch takes as long as its slowest call
+     * instead of the sum of all calls.
+     *
+     * @param callBack           optional, notified once with all results in request order or the first failure
+     * @param callbackThreadMode the thread callBack is notified on
+     * @param timeoutMillis      timeout of each call, 0 to wait forever
+     */
+    public CallAllFuture callAll(Context context, List<CallRequest> requests, OnBatchCallBack callBack,
+                                 ThreadMode callbackThreadMode, long timeoutMillis) {
+        List<CallRequest> batch = new ArrayList<>(requests);
+        CallAllFuture future = new CallAllFuture(this, batch, callBack, callbackThreadMode);
+        if (batch.isEmpty()) {
+            future.succeedEmpty();
+            return future;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            CallRequest request = batch.get(i);
+            CallFuture call = callAsync(context, request.getUrl(), request.getParams(), future.callBackFor(i),
+                    ThreadMode.POSTING, timeoutMillis);
+            future.started(i, call);
+        }
+        return future;
+    }
+
+    public CallAllFuture callAll(List<CallRequest> requests) {
+        return callAll(null, requests, null, ThreadMode.POSTING, 0);
+    }
+
+    public CallAllFuture callAll(List<CallRequest> requests, OnBatchCallBack callBack, ThreadMode callbackThreadMode) {
+        return callAll(null, requests, callBack, callbackThreadMode, 0);
+    }
+
+    public CallFuture callAsync(EUrl url, JsonObject params) {
+        return callAsync(null, url, params, null, ThreadMode.POSTING, 0);
+    }
+
+    public CallFuture callAsync(EUrl url, JsonObject params, OnMethodCallBack callBack, ThreadMode callbackThreadMode) {
+        return callAsync(null, url, params, callBack, callbackThreadMode, 0);
+    }
+
+    private boolean invokeService(Context context, EUrl url, JsonObject jsonObject, OnMethodCallBack callBack) throws Exception {
+        Service service = findServiceByUrl(url.getUrl());
+        if (service == null)
+            throw new EventBusException("EventBus Call Method, but not find Service by url[" + url.getUrl() + "]");
+        Method method = findMethodById(service, url.getId());
+        if (method == null) {
+            throw new EventBusException("EventBus Call Method, but not find Service.Method by id[" + url.getId() + "] from " + service);
+        }
+        String mName = method.getName();
+        Class<?> clazz = service.getClazz();
+        List<Method.Data> dataList = method.getDataList();
+
+        String key = method.cache != null || method.singleFlight != null ? method.paramsKey(jsonObject) : null;
+        if (method.cache != null) {
+            ServiceCache.Entry entry = method.cache.get(key);
+            if (entry != null) {
+                if (callBack != null) {
+                    callBack.onSuccess(entry.result);
+                }
+                return false;
+            }
+        }
+        SingleFlight.Flight flight = null;
+        if (method.singleFlight != null) {
+            flight = method.singleFlight.join(key, callBack, executorService);
+            if (flight == null) {
+                // Attached to an identical call in flight, which completes the callBack
+                return true;
+            }
+            if (callBack instanceof CallFuture.ServiceCallBack) {
+                ((CallFuture.ServiceCallBack) callBack).future().leads(flight);
+            }
+            callBack = flight;
+        }
+        if (method.cache != null) {
+            callBack = new ServiceCache.CachingCallBack(method.cache, key, callBack);
+        }
+
+        List<Object> params = new ArrayList<>();
         try {
-            Service service = findServiceByUrl(url.getUrl());
-            if (service == null)
-                throw new EventBusException("EventBus Call Method, but not find Service by url[" + url.getUrl() + "]");
-            Method method = findMethodById(service, url.getId());
-            if (method == null) {
-                throw new EventBusException("EventBus Call Method, but not find Service.Method by id[" + url.getId() + "] from " + service);
-            }
-            String mName = method.getName();
-            Class<?> clazz = service.getClazz();
-            List<Method.Data> dataList = method.getDataList();
-
-            List<Object> params = new ArrayList<>();
             java.lang.reflect.Method execMethod = findExecMethod(clazz, mName, context, callBack, jsonObject, dataList, params);
             if (execMethod == null) {
                 throw new EventBusException("EventBus Call Method, but not find ExecMethod by name and paramList[" + method.getName() + "] from " + service);
@@ -445,10 +1358,53 @@ public class EventBus {
                     throw new EventBusException("we will very sorry, the method has more 10 params, but you translate " + params.size() + " params for " + execMethod.getName());
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            if (flight != null) {
+                flight.failed(jsonObject, e);
+            }
+            throw e;
+        }
+        boolean callBackPending = callBack != null && params.contains(callBack);
+        if (!callBackPending) {
+            if (flight != null) {
+                flight.returned();
+            }
+        }
+        return callBackPending;
+    }
+
+    /**
+     * Drops all cached results of the given {@link Cacheable} service method.
+     */
+    public void invalidateCache(EUrl url) {
+        ServiceCache cache = findServiceCache(url);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Drops the cached result of the given {@link Cacheable} service method for the given params.
+     */
+    public void invalidateCache(EUrl url, JsonObject params) {
+        Method method = findMethodById(findServiceByUrl(url.getUrl()), url.getId());
+        if (method != null && method.cache != null) {
+            method.cache.invalidate(method.paramsKey(params));
         }
     }
 
+    /**
+     * @return hit and miss counts of the given service method's cache, or null if the method is not cacheable
+     */
+    public CacheStats getCacheStats(EUrl url) {
+        ServiceCache cache = findServiceCache(url);
+        return cache != null ? cache.stats() : null;
+    }
+
+    private ServiceCache findServiceCache(EUrl url) {
+        Method method = findMethodById(findServiceByUrl(url.getUrl()), url.getId());
+        return method != null ? method.cache : null;
+    }
+
     public void call(EUrl url, JsonObject params) {
         this.call(null, url, params, null);
     }
@@ -464,28 +1420,10 @@ public class EventBus {
 
     public void open(Context context, EUrl url, JsonObject jsonObject) {
         try {
-            Service service = findServiceByUrl(url.getUrl());
-            if (service == null)
-                throw new EventBusException("EventBus Open Page, but  not find Service by url[" + url.getUrl() + "]");
-            Page page = findPageById(service, url.getId());
-            if (page == null) {
-                throw new EventBusException("EventBus Open Page, but not find Service.Page by id[" + url.getId() + "] from " + service);
-            }
-            if (jsonObject == null) {
-                for (Page.Bundle item : page.getBundleList()) {
-                    if (item.getNull() == false) {
-                        throw new EventBusException("Page[" + page + "], the id[" + item.getId() + "] has null value to give " + item.getKey());
-                    }
-                }
-            }
-
-            Intent intent = new Intent(context, service.getClazz());
-            Bundle bundle = getBundleByPage(page, jsonObject);
-            if (bundle != null) {
-                intent.putExtras(bundle);
-            }
-            if (context instanceof Activity && page.getRequestCode() > 0) {
-                ((Activity) context).startActivityForResult(intent, page.getRequestCode());
+            PageRoute route = findPageRoute(url);
+            Intent intent = route.newIntent(context, jsonObject);
+            if (context instanceof Activity && route.requestCode > 0) {
+                ((Activity) context).startActivityForResult(intent, route.requestCode);
             } else {
                 context.startActivity(intent);
             }
@@ -494,6 +1432,46 @@ public class EventBus {
         }
     }
 
+    /**
+     * Hint that the page is likely to be opened soon, e.g. when a link to it becomes visible. Initializes the page's
+     * Activity class and converts the data into the Intent on a background thread, so the following
+     * {@link #open(Context, EUrl, JsonObject)} with the same, unchanged JsonObject instance only starts the Activity.
+     */
+    public void prefetch(final Context context, EUrl url, final JsonObject jsonObject) {
+        final PageRoute route;
+        try {
+            route = findPageRoute(url);
+        } catch (EventBusException e) {
+            Log.w(TAG, e.getMessage());
+            return;
+        }
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Class<?> clazz = route.service.getClazz();
+                    Class.forName(clazz.getName(), true, clazz.getClassLoader());
+                    route.prefetch(context, jsonObject);
+                } catch (Exception e) {
+                    Log.w(TAG, "EventBus Prefetch Page " + route.page.getId() + " failed", e);
+                }
+            }
+        });
+    }
+
+    private PageRoute findPageRoute(EUrl url) {
+        ServiceRegistry registry = serviceRegistry;
+        PageRoute route = registry.findPageRoute(url.getUrl(), url.getId());
+        if (route == null) {
+            Service service = registry.findService(url.getUrl());
+            if (service == null) {
+                throw new EventBusException("EventBus Open Page, but  not find Service by url[" + url.getUrl() + "]");
+            }
+            throw new EventBusException("EventBus Open Page, but not find Service.Page by id[" + url.getId() + "] from " + service);
+        }
+        return route;
+    }
+
     private java.lang.reflect.Method findExecMethod(Class<?> clazz, String name, Context context, OnMethodCallBack callBack, JsonObject json, List<Method.Data> dataList, List<Object> outParams) {
         List<java.lang.reflect.Method> like = null;
         while (clazz != null) {
@@ -595,50 +1573,10 @@ public class EventBus {
         return null;
     }
 
-    private Bundle getBundleByPage(Page page, JsonObject json) throws Exception {
-        if (page != null && json != null && page.getBundleList().size() > 0) {
-            Bundle bundle = new Bundle();
-            for (Page.Bundle item : page.getBundleList()) {
-                String id = item.getId();
-                String key = item.getKey();
-                Class<? extends Serializable> clazz = item.getType();
-                boolean isNull = item.getNull();
-
-                JsonElement value = json.get(id);
-                if (!isNull && value.isJsonNull())
-                    throw new EventBusException("Page.Bundle[" + item + "], the id[" + id + "] has null value to give " + key);
-
-                if (!value.isJsonNull()) {
-                    if (clazz == Boolean.class) {
-                        bundle.putBoolean(key, value.getAsBoolean());
-                    } else if (clazz == Integer.class) {
-                        bundle.putInt(key, value.getAsInt());
-                    } else if (clazz == Long.class) {
-                        bundle.putLong(key, value.getAsLong());
-                    } else if (clazz == Float.class) {
-                        bundle.putFloat(key, value.getAsFloat());
-                    } else if (clazz == Double.class) {
-                        bundle.putDouble(key, value.getAsDouble());
-                    } else if (clazz == String.class) {
-                        bundle.putString(key, value.getAsString());
-                    } else if (clazz == Byte.class) {
-                        bundle.putByte(key, value.getAsByte());
-                    } else if (clazz == char.class) {
-                        bundle.putChar(key, value.getAsCharacter());
-                    } else {
-                        bundle.putSerializable(key, new Gson().fromJson(value, clazz));
-                    }
-                }
-            }
-            return bundle;
-        }
-        return null;
-    }
-
     public boolean hasSubscriberForEvent(String url) {
-        CopyOnWriteArrayList<Subscription> subscriptions;
+        List<Subscription> subscriptions;
         synchronized (this) {
-            subscriptions = subscriptionsByEventType.get(url);
+            subscriptions = findSubscriptions(url);
         }
         if (subscriptions != null && !subscriptions.isEmpty()) {
             return true;
@@ -647,8 +1585,12 @@ public class EventBus {
     }
 
     private Service findServiceByUrl(String url) {
+        return serviceRegistry.findService(url);
+    }
+
+    private static Service findServiceByUrl(List<Service> services, String url) {
         if (url != null) {
-            for (Service item : serviceList) {
+            for (Service item : services) {
                 if (url.equalsIgnoreCase(item.getUrl())) {
                     return item;
                 }
@@ -657,7 +1599,7 @@ public class EventBus {
         return null;
     }
 
-    private Method findMethodById(Service service, String id) {
+    static Method findMethodById(Service service, String id) {
         if (service != null && id != null) {
             for (Method item : service.getMethods()) {
                 if (id.equalsIgnoreCase(item.getId())) {
@@ -668,7 +1610,7 @@ public class EventBus {
         return null;
     }
 
-    private Page findPageById(Service service, String id) {
+    private static Page findPageById(Service service, String id) {
         if (service != null && id != null) {
             for (Page item : service.getPages()) {
                 if (id.equalsIgnoreCase(item.getId())) {
@@ -680,11 +1622,31 @@ public class EventBus {
     }
 
     private void postSingleEvent(PostEvent post, PostingThreadState postingState) throws Error {
-        CopyOnWriteArrayList<Subscription> subscriptions;
+        boolean delivered = postDown(post, postingState, null);
+        // Up while no bus below received the event; a parent doesn't forward back to the child it came from
+        for (EventBus from = this; !delivered && from.parent != null; from = from.parent) {
+            delivered = from.parent.postDown(post, postingState, from);
+        }
+        if (!delivered && logNoSubscriberMessages) {
+            Log.d(TAG, "No subscribers registered for event " + post.url);
+        }
+    }
+
+    /**
+     * Delivers the event to the subscribers of this bus and then to those of its children.
+     *
+     * @param skip child not to forward to, null for all
+     * @return false if neither this bus nor its children have a subscriber for the event
+     */
+    private boolean postDown(PostEvent post, PostingThreadState postingState, EventBus skip) {
+        removeCollectedSubscribers();
+        List<Subscription> subscriptions;
         synchronized (this) {
-            subscriptions = subscriptionsByEventType.get(post.url);
+            subscriptions = findSubscriptions(post.url);
         }
+        boolean delivered = false;
         if (subscriptions != null && !subscriptions.isEmpty()) {
+            delivered = true;
             for (Subscription subscription : subscriptions) {
                 postingState.event = post;
                 postingState.subscription = subscription;
@@ -698,43 +1660,99 @@ public class EventBus {
                     postingState.canceled = false;
                 }
                 if (aborted) {
-                    break;
+                    return true;
                 }
             }
-        } else {
-            if (logNoSubscriberMessages) {
-                Log.d(TAG, "No subscribers registered for event " + post.url);
+        }
+        if (!children.isEmpty()) {
+            for (WeakReference<EventBus> reference : children) {
+                EventBus child = reference.get();
+                if (child == null) {
+                    children.remove(reference);
+                } else if (child != skip && child.postDown(post, postingState, null)) {
+                    delivered = true;
+                }
             }
         }
+        return delivered;
     }
 
     private void postToSubscription(Subscription subscription, PostEvent post, boolean isMainThread) {
+        EventFilter filter = subscription.subscriberMethod.filter;
+        if (filter != null) {
+            Object subscriber = subscription.getSubscriber();
+            if (subscriber == null || !filter.accept(subscriber, post.event)) {
+                return;
+            }
+        }
+        if (subscription.subscriberMethod.throttleNanos > 0 && !subscription.throttle(System.nanoTime())) {
+            return;
+        }
+        if (subscription.subscriberMethod.debounceMillis > 0) {
+            if (subscription.debounce(post, System.nanoTime())) {
+                scheduleDebounced(subscription, subscription.subscriberMethod.debounceMillis * 1000000L);
+            }
+            return;
+        }
         switch (subscription.subscriberMethod.threadMode) {
             case POSTING:
-                invokeSubscriber(subscription, post.event);
+                invokeSubscriber(subscription, post.url, post.event);
                 break;
             case MAIN:
                 if (isMainThread) {
-                    invokeSubscriber(subscription, post.event);
+                    invokeSubscriber(subscription, post.url, post.event);
                 } else {
-                    mainThreadPoster.enqueue(subscription, post.event);
+                    mainThreadPoster.enqueue(this, subscription, post.url, post.event, post.priority);
                 }
                 break;
             case BACKGROUND:
                 if (isMainThread) {
-                    backgroundPoster.enqueue(subscription, post.event);
+                    backgroundPoster.enqueue(this, subscription, post.url, post.event, post.priority);
                 } else {
-                    invokeSubscriber(subscription, post.event);
+                    invokeSubscriber(subscription, post.url, post.event);
                 }
                 break;
             case ASYNC:
-                asyncPoster.enqueue(subscription, post.event);
+                asyncPoster.enqueue(this, subscription, post.url, post.event, post.priority);
                 break;
             default:
                 throw new IllegalStateException("Unknown thread mode: " + subscription.subscriberMethod.threadMode);
         }
     }
 
+    /**
+     * Waits on the shared timer until the subscription's debounce deadline has passed. Events arriving meanwhile only
+     * push the deadline back, so there is one timer task per quiet period instead of one per event.
+     */
+    private void scheduleDebounced(final Subscription subscription, long delayNanos) {
+        getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                PostEvent post = subscription.pollDebouncedPost(now);
+                if (post == null) {
+                    scheduleDebounced(subscription, subscription.debounceRemainingNanos(now));
+                    return;
+                }
+                if (!subscription.active) {
+                    return;
+                }
+                // Keep the timer thread free: POSTING and BACKGROUND subscribers get a background thread
+                switch (subscription.subscriberMethod.threadMode) {
+                    case MAIN:
+                        mainThreadPoster.enqueue(EventBus.this, subscription, post.url, post.event, post.priority);
+                        break;
+                    case ASYNC:
+                        asyncPoster.enqueue(EventBus.this, subscription, post.url, post.event, post.priority);
+                        break;
+                    default:
+                        backgroundPoster.enqueue(EventBus.this, subscription, post.url, post.event, post.priority);
+                        break;
+                }
+            }
+        }, delayNanos, 0);
+    }
+
     /**
      * Invokes the subscriber if the subscriptions is still active. Skipping subscriptions prevents race conditions
      * between {@link #unregister(Object)} and event delivery. Otherwise the event might be delivered after the
@@ -742,21 +1760,137 @@ public class EventBus {
      * live cycle of an Activity or Fragment.
      */
     void invokeSubscriber(PendingPost pendingPost) {
+        String url = pendingPost.url;
         Object event = pendingPost.event;
         Subscription subscription = pendingPost.subscription;
+        ReplyFuture replyFuture = pendingPost.replyFuture;
+        int replyIndex = pendingPost.replyIndex;
         PendingPost.releasePendingPost(pendingPost);
-        if (subscription.active) {
-            invokeSubscriber(subscription, (JsonObject) event);
+        Object reply = subscription.active ? invokeSubscriber(subscription, url, (JsonObject) event) : null;
+        if (replyFuture != null) {
+            replyFuture.answered(replyIndex, reply);
         }
     }
 
-    void invokeSubscriber(Subscription subscription, JsonObject event) {
+    /**
+     * Invokes a delivery of the BACKGROUND or ASYNC poster under the watch of the {@link DeliveryWatchdog}.
+     *
+     * @param poster the background poster running the delivery, null for ASYNC
+     */
+    void invokeSubscriber(PendingPost pendingPost, BackgroundPoster poster) {
+        DeliveryWatchdog.Slot slot = watchdog.begin(this, pendingPost.subscription, poster);
         try {
-            subscription.subscriberMethod.method.invoke(subscription.subscriber, event);
+            invokeSubscriber(pendingPost);
+        } finally {
+            if (slot != null) {
+                watchdog.end(slot);
+            }
+        }
+    }
+
+    /**
+     * @param url the url the event was posted to, not the pattern of a wildcard subscription
+     * @return what the subscriber method returned, a reply for {@link #postAndCollect(String, JsonObject, long)}
+     */
+    Object invokeSubscriber(Subscription subscription, String url, JsonObject event) {
+        if (subscriberInterceptors != null) {
+            return invokeSubscriberIntercepted(subscription, url, event);
+        }
+        Object subscriber = subscription.getSubscriber();
+        if (subscriber == null) {
+            // Weakly registered and collected, but not removed yet
+            return null;
+        }
+        // Checked right before the invoke: a half open circuit allows one trial, which must end in a success or failure
+        if (subscription.failing && !subscription.allowDelivery(System.nanoTime())) {
+            // Circuit open: skip the invoke that would most likely throw again
+            return null;
+        }
+        try {
+            Object reply = subscription.subscriberMethod.method.invoke(subscriber, event);
+            if (subscription.failing) {
+                subscription.recordSuccess();
+            }
+            return reply;
+        } catch (InvocationTargetException e) {
+            handleSubscriberException(subscription, subscriber, url, event, e.getCause());
+            return null;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unexpected exception", e);
+        }
+    }
+
+    private Object invokeSubscriberIntercepted(Subscription subscription, String url, JsonObject event) {
+        SubscriberInterceptor[] interceptors = subscriberInterceptors;
+        Object subscriber = subscription.getSubscriber();
+        if (subscriber == null) {
+            return null;
+        }
+        // Checked before the interceptors, so they don't see deliveries skipped by an open circuit
+        if (subscription.failing && !subscription.allowDelivery(System.nanoTime())) {
+            return null;
+        }
+        boolean vetoed = true;
+        try {
+            for (SubscriberInterceptor interceptor : interceptors) {
+                if (!interceptor.beforeInvoke(url, event, subscriber)) {
+                    return null;
+                }
+            }
+            vetoed = false;
+        } finally {
+            if (vetoed && subscription.failing) {
+                // Vetoed or failed before the invoke: don't leave a half open circuit waiting for its trial
+                subscription.releaseTrial();
+            }
+        }
+        Throwable error = null;
+        long started = System.nanoTime();
+        try {
+            Object reply = subscription.subscriberMethod.method.invoke(subscriber, event);
+            if (subscription.failing) {
+                subscription.recordSuccess();
+            }
+            return reply;
         } catch (InvocationTargetException e) {
-            Log.e("exception", e.getMessage());
+            error = e.getCause();
+            handleSubscriberException(subscription, subscriber, url, event, error);
+            return null;
         } catch (IllegalAccessException e) {
             throw new IllegalStateException("Unexpected exception", e);
+        } finally {
+            long cost = System.nanoTime() - started;
+            for (int i = interceptors.length - 1; i >= 0; i--) {
+                interceptors[i].afterInvoke(url, event, subscriber, cost, error);
+            }
+        }
+    }
+
+    /**
+     * Counts the failure against the circuit breaker of the subscription and reports it, at most once per interval
+     * and subscription. Failures of {@link SubscriberExceptionEvent} subscribers are only logged, so they can't cause
+     * an endless loop.
+     */
+    private void handleSubscriberException(Subscription subscription, Object subscriber, String url, JsonObject event,
+                                           Throwable cause) {
+        if (throwSubscriberException) {
+            throw new EventBusException("Invoking subscriber failed", cause);
+        }
+        long now = System.nanoTime();
+        boolean opened = subscription.recordFailure(now, circuitFailureThreshold, circuitOpenNanos);
+        int failures = subscription.takeFailureReport(now, subscriberExceptionIntervalNanos, opened);
+        if (failures == 0) {
+            return;
+        }
+        boolean circuitOpen = opened || subscription.isCircuitOpen();
+        if (logSubscriberExceptions) {
+            Log.e(TAG, "Could not dispatch event " + url + " to " + subscriber.getClass() + " (" + failures
+                    + " failures" + (circuitOpen ? ", circuit open)" : ")"), cause);
+        }
+        if (sendSubscriberExceptionEvent && !SubscriberExceptionEvent.URL.equals(url)) {
+            SubscriberExceptionEvent exceptionEvent = new SubscriberExceptionEvent(this, cause, event, subscriber,
+                    url, failures, circuitOpen);
+            post(SubscriberExceptionEvent.URL, exceptionEvent.toJson());
         }
     }
 
@@ -764,25 +1898,90 @@ public class EventBus {
      * For ThreadLocal, much faster to set (and get multiple values).
      */
     final static class PostingThreadState {
-        final List<PostEvent> eventQueue = new ArrayList<>();
+        /**
+         * Ring buffer, so draining cascades of posts is O(1) per event.
+         */
+        final ArrayDeque<PostEvent> eventQueue = new ArrayDeque<>();
+        /**
+         * Posts made while delivering the current event, when posting depth first.
+         */
+        final List<PostEvent> nestedPosts = new ArrayList<>();
         boolean isPosting;
         boolean isMainThread;
         Subscription subscription;
         PostEvent event;
         boolean canceled;
+
+        void queueNestedPostsFirst() {
+            for (int i = nestedPosts.size() - 1; i >= 0; i--) {
+                eventQueue.addFirst(nestedPosts.get(i));
+            }
+            nestedPosts.clear();
+        }
     }
 
     final static class PostEvent {
+        EventBus eventBus;
         String url;
         JsonObject event;
+        EventPriority priority;
 
-        public PostEvent(String url, JsonObject event) {
+        public PostEvent(EventBus eventBus, String url, JsonObject event, EventPriority priority) {
+            this.eventBus = eventBus;
             this.url = url;
             this.event = event;
+            this.priority = priority;
         }
     }
 
     ExecutorService getExecutorService() {
         return executorService;
     }
+
+    /**
+     * Runs the runnable on a thread chosen like for a subscriber with the given thread mode. Unlike subscribers,
+     * BACKGROUND runnables don't share the single background thread.
+     */
+    void execute(ThreadMode threadMode, Runnable runnable) {
+        boolean isMainThread = Looper.getMainLooper() == Looper.myLooper();
+        switch (threadMode) {
+            case POSTING:
+                runnable.run();
+                break;
+            case MAIN:
+                if (isMainThread) {
+                    runnable.run();
+                } else {
+                    mainThreadPoster.post(runnable);
+                }
+                break;
+            case BACKGROUND:
+                if (isMainThread) {
+                    executorService.execute(runnable);
+                } else {
+                    runnable.run();
+                }
+                break;
+            case ASYNC:
+                executorService.execute(runnable);
+                break;
+            default:
+                throw new IllegalStateException("Unknown thread mode: " + threadMode);
+        }
+    }
+
+    /**
+     * The one timer thread of all buses: delayed and periodic posts, call timeouts, debouncing and the checks for
+     * stuck deliveries.
+     */
+    static TimingWheel getTimer() {
+        if (timer == null) {
+            synchronized (EventBus.class) {
+                if (timer == null) {
+                    timer = new TimingWheel(TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+                }
+            }
+        }
+        return timer;
+    }
 }
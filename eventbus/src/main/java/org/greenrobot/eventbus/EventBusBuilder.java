@@ -15,6 +15,10 @@
  */
 package org.greenrobot.eventbus;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -26,8 +30,22 @@ public class EventBusBuilder {
     private final static ExecutorService DEFAULT_EXECUTOR_SERVICE = Executors.newCachedThreadPool();
 
     boolean logNoSubscriberMessages = true;
+    boolean logSubscriberExceptions = true;
+    boolean sendSubscriberExceptionEvent = true;
     boolean throwSubscriberException;
+    long subscriberExceptionIntervalMillis = 1000;
+    int circuitFailureThreshold = 5;
+    long circuitOpenMillis = 30000;
+    long stuckDeliveryTimeoutMillis;
+    boolean replaceStuckBackgroundWorker;
+    boolean depthFirstPosting;
     ExecutorService executorService = DEFAULT_EXECUTOR_SERVICE;
+    ExecutorService callExecutorService;
+    float mainThreadRefreshRate = HandlerPoster.DEFAULT_REFRESH_RATE;
+    final Map<String, EventPriority> priorityByUrl = new HashMap<>();
+    List<SubscriberInterceptor> subscriberInterceptors;
+    List<CallInterceptor> callInterceptors;
+    ServiceRegistry serviceRegistry;
 
     /**
      * Default: true
@@ -37,6 +55,64 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * Default: true
+     */
+    public EventBusBuilder logSubscriberExceptions(boolean logSubscriberExceptions) {
+        this.logSubscriberExceptions = logSubscriberExceptions;
+        return this;
+    }
+
+    /**
+     * Posts a {@link SubscriberExceptionEvent} when a subscriber throws (default: true).
+     */
+    public EventBusBuilder sendSubscriberExceptionEvent(boolean sendSubscriberExceptionEvent) {
+        this.sendSubscriberExceptionEvent = sendSubscriberExceptionEvent;
+        return this;
+    }
+
+    /**
+     * Minimum time between two logs or {@link SubscriberExceptionEvent}s about the same subscriber method (default:
+     * 1000ms). Failures in between are counted and reported with the next one.
+     */
+    public EventBusBuilder subscriberExceptionInterval(long intervalMillis) {
+        this.subscriberExceptionIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * Circuit breaker per subscriber method (default: 5 failures, 30000ms). After the given number of consecutive
+     * failures, the method doesn't receive events for the open time. Then one event is let through: if it succeeds
+     * the circuit closes, if it fails the circuit opens again for twice as long (up to 16 times the open time).
+     *
+     * @param failureThreshold 0 to disable the circuit breaker
+     */
+    public EventBusBuilder circuitBreaker(int failureThreshold, long openMillis) {
+        this.circuitFailureThreshold = failureThreshold;
+        this.circuitOpenMillis = openMillis;
+        return this;
+    }
+
+    /**
+     * Reports BACKGROUND and ASYNC deliveries running longer than the given time with a {@link StuckDeliveryEvent}
+     * and a log of the stuck thread's stack (default: 0, only subscriber methods with a
+     * {@link org.greenrobot.eventbus.annotation.Subscribe#timeoutMs()} are watched). A stuck BACKGROUND delivery holds
+     * up all following BACKGROUND events, see {@link #replaceStuckBackgroundWorker(boolean)}.
+     */
+    public EventBusBuilder stuckDeliveryTimeout(long timeoutMillis) {
+        this.stuckDeliveryTimeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Moves the queued BACKGROUND events to a new worker thread when the current one is reported stuck (default:
+     * false). The stuck delivery keeps running, so BACKGROUND subscribers may then run concurrently until it returns.
+     */
+    public EventBusBuilder replaceStuckBackgroundWorker(boolean replaceStuckBackgroundWorker) {
+        this.replaceStuckBackgroundWorker = replaceStuckBackgroundWorker;
+        return this;
+    }
+
     /**
      * Fails if an subscriber throws an exception (default: false).
      * <p/>
@@ -48,6 +124,91 @@ public class EventBusBuilder {
         return this;
     }
 
+    /**
+     * Order of events posted by subscribers while an event is being delivered (default: false, breadth first).
+     * Breadth first delivers them after all events posted before. Depth first delivers them right after the current
+     * event, before its siblings, so a cascade is handled completely before the next event starts.
+     */
+    public EventBusBuilder depthFirstPosting(boolean depthFirstPosting) {
+        this.depthFirstPosting = depthFirstPosting;
+        return this;
+    }
+
+    /**
+     * Provide a custom thread pool to EventBus used for async and background event delivery. This is an advanced
+     * setting to that can break things: ensure the given ExecutorService won't get stuck to avoid undefined behavior.
+     */
+    public EventBusBuilder executorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    /**
+     * Thread pool running {@link EventBus#callAsync(android.content.Context, EUrl, com.google.gson.JsonObject,
+     * OnMethodCallBack, ThreadMode, long)} (default: the {@link #executorService(ExecutorService)}).
+     */
+    public EventBusBuilder callExecutorService(ExecutorService callExecutorService) {
+        this.callExecutorService = callExecutorService;
+        return this;
+    }
+
+    /**
+     * Refresh rate of the display the main thread renders to, e.g. {@code Display.getRefreshRate()} (default: 60).
+     * MAIN thread deliveries are split into slices that fit into one frame. Use
+     * {@link EventBus#setMainThreadRefreshRate(float)} if the rate changes at runtime.
+     */
+    public EventBusBuilder mainThreadRefreshRate(float mainThreadRefreshRate) {
+        this.mainThreadRefreshRate = mainThreadRefreshRate;
+        return this;
+    }
+
+    /**
+     * Priority of events posted to the given url without an explicit priority (default: {@link EventPriority#NORMAL}).
+     * Null restores the default.
+     */
+    public EventBusBuilder defaultPriority(String url, EventPriority priority) {
+        if (priority == null) {
+            priorityByUrl.remove(url);
+        } else {
+            priorityByUrl.put(url, priority);
+        }
+        return this;
+    }
+
+    /**
+     * Adds an interceptor around every subscriber invocation. Interceptors run in the order they were added.
+     * Buses built without interceptors don't pay anything for this feature.
+     */
+    public EventBusBuilder addSubscriberInterceptor(SubscriberInterceptor interceptor) {
+        if (subscriberInterceptors == null) {
+            subscriberInterceptors = new ArrayList<>();
+        }
+        subscriberInterceptors.add(interceptor);
+        return this;
+    }
+
+    /**
+     * Adds an interceptor around every service call. Interceptors run in the order they were added.
+     */
+    public EventBusBuilder addCallInterceptor(CallInterceptor interceptor) {
+        if (callInterceptors == null) {
+            callInterceptors = new ArrayList<>();
+        }
+        callInterceptors.add(interceptor);
+        return this;
+    }
+
+    /**
+     * Services the bus starts with, shared with other buses instead of parsing and keeping them per bus (default:
+     * none). Registering, reloading or unregistering services later only changes this bus.
+     *
+     * @see ServiceRegistry#fromXml(android.content.Context, int...)
+     */
+    public EventBusBuilder serviceRegistry(ServiceRegistry serviceRegistry) {
+        this.serviceRegistry = serviceRegistry;
+        return this;
+    }
+
     /**
      * Installs the default EventBus returned by {@link EventBus#getDefault()} using this builders' values. Must be
      * done only once before the first usage of the default EventBus.
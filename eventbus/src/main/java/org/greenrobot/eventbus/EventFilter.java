@@ -0,0 +1,191 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled form of {@link org.greenrobot.eventbus.annotation.Subscribe#filter()}, parsed once when the subscriber
+ * class is scanned and evaluated on the posting thread, so rejected events are never queued or handed to another
+ * thread.
+ * <p/>
+ * Grammar: {@code clause ( "&&" clause )*} where a clause is {@code path ("==" | "!=") operand}. The path selects a
+ * member of the event, dots descend into nested objects ({@code user.id}). The operand is a literal ({@code 'text'},
+ * {@code 42}, {@code true}, {@code false}, {@code null}) or {@code $name}, a field of the subscriber read at delivery
+ * time, e.g. {@code "userId == $userId"}.
+ */
+final class EventFilter {
+
+    private final Clause[] clauses;
+
+    private EventFilter(Clause[] clauses) {
+        this.clauses = clauses;
+    }
+
+    /**
+     * @return the compiled filter, or null for an empty expression
+     * @throws EventBusException if the expression is malformed or references an unknown subscriber field
+     */
+    static EventFilter parse(String expression, Class<?> subscriberClass) {
+        if (expression == null || expression.trim().length() == 0) {
+            return null;
+        }
+        List<Clause> clauses = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = indexOutsideQuotes(expression, "&&", start)) >= 0) {
+            clauses.add(parseClause(expression, expression.substring(start, end).trim(), subscriberClass));
+            start = end + 2;
+        }
+        clauses.add(parseClause(expression, expression.substring(start).trim(), subscriberClass));
+        return new EventFilter(clauses.toArray(new Clause[clauses.size()]));
+    }
+
+    private static Clause parseClause(String expression, String clause, Class<?> subscriberClass) {
+        // The first operator outside of quotes, so string literals may contain "==" and "!=" too
+        int equal = indexOutsideQuotes(clause, "==", 0);
+        int notEqual = indexOutsideQuotes(clause, "!=", 0);
+        boolean negate = notEqual >= 0 && (equal < 0 || notEqual < equal);
+        int op = negate ? notEqual : equal;
+        if (op <= 0) {
+            throw new EventBusException("Filter[" + expression + "] expected 'path == value' or 'path != value' but found '" + clause + "'");
+        }
+        String path = clause.substring(0, op).trim();
+        String operand = clause.substring(op + 2).trim();
+        if (path.length() == 0 || operand.length() == 0) {
+            throw new EventBusException("Filter[" + expression + "] incomplete clause '" + clause + "'");
+        }
+        String[] segments = path.split("\\.");
+        for (String segment : segments) {
+            if (segment.length() == 0) {
+                throw new EventBusException("Filter[" + expression + "] illegal path '" + path + "'");
+            }
+        }
+        if (operand.charAt(0) == '$') {
+            return new Clause(segments, negate, null, findField(expression, subscriberClass, operand.substring(1)));
+        }
+        return new Clause(segments, negate, parseLiteral(expression, operand), null);
+    }
+
+    /**
+     * @return the index of the token outside of '...' and "..." literals, or -1
+     */
+    private static int indexOutsideQuotes(String text, String token, int from) {
+        char quote = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (text.startsWith(token, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static JsonElement parseLiteral(String expression, String literal) {
+        char first = literal.charAt(0);
+        if (first == '\'' || first == '"') {
+            if (literal.length() < 2 || literal.charAt(literal.length() - 1) != first) {
+                throw new EventBusException("Filter[" + expression + "] unterminated string " + literal);
+            }
+            return new JsonPrimitive(literal.substring(1, literal.length() - 1));
+        } else if ("null".equals(literal)) {
+            return JsonNull.INSTANCE;
+        } else if ("true".equals(literal) || "false".equals(literal)) {
+            return new JsonPrimitive(Boolean.valueOf(literal));
+        }
+        try {
+            if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+                return new JsonPrimitive(Double.valueOf(literal));
+            }
+            return new JsonPrimitive(Long.valueOf(literal));
+        } catch (NumberFormatException e) {
+            throw new EventBusException("Filter[" + expression + "] illegal literal " + literal
+                    + ", strings must be quoted");
+        }
+    }
+
+    private static Field findField(String expression, Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // Try the super class
+            }
+        }
+        throw new EventBusException("Filter[" + expression + "] subscriber " + clazz.getName() + " has no field " + name);
+    }
+
+    boolean accept(Object subscriber, JsonObject event) {
+        for (Clause clause : clauses) {
+            if (!clause.accept(subscriber, event)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Clause {
+        final String[] path;
+        final boolean negate;
+        final JsonElement literal;
+        final Field field;
+
+        Clause(String[] path, boolean negate, JsonElement literal, Field field) {
+            this.path = path;
+            this.negate = negate;
+            this.literal = literal;
+            this.field = field;
+        }
+
+        boolean accept(Object subscriber, JsonObject event) {
+            JsonElement value = select(event);
+            JsonElement expected = field != null ? readField(subscriber) : literal;
+            return expected.equals(value) != negate;
+        }
+
+        private JsonElement select(JsonObject event) {
+            JsonElement value = event;
+            for (String segment : path) {
+                if (value == null || !value.isJsonObject()) {
+                    return JsonNull.INSTANCE;
+                }
+                value = value.getAsJsonObject().get(segment);
+            }
+            return value != null ? value : JsonNull.INSTANCE;
+        }
+
+        private JsonElement readField(Object subscriber) {
+            Object value;
+            try {
+                value = field.get(subscriber);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Unexpected exception", e);
+            }
+            if (value == null) {
+                return JsonNull.INSTANCE;
+            } else if (value instanceof JsonElement) {
+                return (JsonElement) value;
+            } else if (value instanceof Number) {
+                return new JsonPrimitive((Number) value);
+            } else if (value instanceof Boolean) {
+                return new JsonPrimitive((Boolean) value);
+            } else if (value instanceof Character) {
+                return new JsonPrimitive((Character) value);
+            }
+            return new JsonPrimitive(String.valueOf(value));
+        }
+    }
+}
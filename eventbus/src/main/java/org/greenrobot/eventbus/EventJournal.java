@@ -0,0 +1,455 @@
+package org.greenrobot.eventbus;
+
+import android.util.Log;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Durable, append-only log of the posts of selected urls, so important events survive a process death while they
+ * wait in a poster queue.
+ * <p/>
+ * Posts are appended to memory-mapped segment files before they are dispatched; the posting thread only copies the
+ * encoded record into the mapping. A background thread flushes dirty segments to disk every
+ * {@link #syncIntervalMillis(long)}, maps the next segment ahead of time and deletes the oldest segments beyond
+ * {@link #maxSegments(int)}.
+ * <p/>
+ * Segment layout: a {@link #SEGMENT_HEADER_SIZE} byte header (int magic, int version, long sequence of the first
+ * record, long creation time) followed by 8 byte aligned records: int length, byte priority, byte padding, short url
+ * length, long sequence, long post time, url bytes, event bytes (UTF-8 JSON), padding. The event length follows
+ * exactly from the record length, the url length and the padding, so stale bytes left in the padding by a write
+ * that a crash interrupted are never read. The length is written last, so a zero length marks the end of the
+ * committed records. Version 1 segments had no padding count; their padding was zeros.
+ *
+ * @see JournalReader
+ */
+public final class EventJournal implements PostObserver {
+    private static final String TAG = EventBus.TAG;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final String SUFFIX = ".journal";
+    static final int MAGIC = 0x45424a4c;
+    static final int VERSION = 2;
+    static final int VERSION_ZERO_PADDED = 1;
+    static final int SEGMENT_HEADER_SIZE = 32;
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 4;
+    static final int OFFSET_BASE_SEQ = 8;
+    static final int OFFSET_CREATED = 16;
+    static final int RECORD_HEADER_SIZE = 24;
+    /**
+     * Written where the next record didn't fit, the record continues in the next segment.
+     */
+    static final int END_OF_SEGMENT = -1;
+
+    private final EventBus eventBus;
+    private final File directory;
+    private final Set<String> urls = new CopyOnWriteArraySet<>();
+
+    private int segmentSize = 4 * 1024 * 1024;
+    private int maxSegments = 16;
+    private long syncIntervalMillis = 100;
+
+    private Segment current;
+    /**
+     * Mapped ahead by the flusher so rolling over doesn't do file I/O on the posting thread.
+     */
+    private Segment next;
+    private final List<Segment> unsynced = new ArrayList<>();
+    private long nextSeq;
+    private Thread flusher;
+    private volatile boolean running;
+
+    public EventJournal(EventBus eventBus, File directory) {
+        this.eventBus = eventBus;
+        this.directory = directory;
+    }
+
+    /**
+     * Size of each segment file (default: 4MB); a single record must fit into one segment.
+     */
+    public EventJournal segmentSize(int segmentSize) {
+        this.segmentSize = Math.max(4096, segmentSize) & ~7;
+        return this;
+    }
+
+    /**
+     * Number of segments kept on disk (default: 16); older segments are deleted.
+     */
+    public EventJournal maxSegments(int maxSegments) {
+        this.maxSegments = Math.max(2, maxSegments);
+        return this;
+    }
+
+    /**
+     * How often written records are forced to disk (default: 100ms). Records written in between are lost only if the
+     * whole device goes down, not if just the process dies.
+     */
+    public EventJournal syncIntervalMillis(long syncIntervalMillis) {
+        this.syncIntervalMillis = Math.max(1, syncIntervalMillis);
+        return this;
+    }
+
+    /**
+     * Journals all posts of the url from now on, while the journal is open. The urls are kept when the journal is
+     * closed and journaled again when it is reopened.
+     */
+    public synchronized EventJournal journal(String url) {
+        if (urls.add(url) && running) {
+            eventBus.addPostObserver(url, this);
+        }
+        return this;
+    }
+
+    public synchronized EventJournal stopJournaling(String url) {
+        if (urls.remove(url) && running) {
+            eventBus.removePostObserver(url, this);
+        }
+        return this;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Opens the journal, continuing after the last record written by a previous process.
+     */
+    public synchronized EventJournal open() throws IOException {
+        if (running) {
+            return this;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File[] files = listSegments(directory);
+        Segment last = null;
+        for (int i = files.length - 1; i >= 0 && last == null; i--) {
+            Segment segment = Segment.map(files[i], segmentIndex(files[i]), segmentSize);
+            if (segment.buffer.getInt(OFFSET_MAGIC) == MAGIC) {
+                last = segment;
+            } else if (!files[i].delete()) {
+                // Mapped ahead but never used
+                Log.w(TAG, "EventJournal could not delete " + files[i]);
+            }
+        }
+        if (last == null) {
+            nextSeq = 0;
+            current = Segment.map(new File(directory, segmentName(0)), 0, segmentSize);
+            activate(current);
+        } else {
+            nextSeq = recover(last);
+            if (last.buffer.getInt(OFFSET_VERSION) == VERSION) {
+                current = last;
+            } else {
+                // Don't mix record formats in one segment
+                current = Segment.map(new File(directory, segmentName(last.index + 1)), last.index + 1, segmentSize);
+                activate(current);
+            }
+        }
+        running = true;
+        for (String url : urls) {
+            eventBus.addPostObserver(url, this);
+        }
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "EventBus-Journal");
+        flusher.setDaemon(true);
+        flusher.start();
+        return this;
+    }
+
+    /**
+     * Flushes all records to disk and stops journaling until the journal is opened again.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            for (String url : urls) {
+                eventBus.removePostObserver(url, this);
+            }
+            running = false;
+            notifyAll();
+            thread = flusher;
+            flusher = null;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // Drop the mappings (unmapped once collected), so a reopen doesn't write into a segment mapped ahead,
+            // which it deletes as never used
+            current = null;
+            next = null;
+            unsynced.clear();
+        }
+    }
+
+    /**
+     * @return the sequence the next journaled post will get
+     */
+    public synchronized long getNextSequence() {
+        return nextSeq;
+    }
+
+    @Override
+    public void onPost(String url, JsonObject event, EventPriority priority) {
+        byte[] urlBytes = url.getBytes(UTF8);
+        byte[] eventBytes = (event == null ? "null" : event.toString()).getBytes(UTF8);
+        int length = (RECORD_HEADER_SIZE + urlBytes.length + eventBytes.length + 7) & ~7;
+        if (length > segmentSize - SEGMENT_HEADER_SIZE || urlBytes.length > Short.MAX_VALUE) {
+            Log.w(TAG, "EventJournal dropped " + url + ", " + length + " bytes don't fit into a segment");
+            return;
+        }
+        append(length, urlBytes, eventBytes, priority, System.currentTimeMillis());
+    }
+
+    private synchronized void append(int length, byte[] urlBytes, byte[] eventBytes, EventPriority priority, long time) {
+        if (!running) {
+            return;
+        }
+        Segment segment = current;
+        if (segment.position + length > segmentSize) {
+            segment = roll();
+            if (segment == null) {
+                return;
+            }
+        }
+        int offset = segment.position;
+        ByteBuffer buffer = segment.buffer;
+        buffer.put(offset + 4, (byte) priority.ordinal());
+        buffer.put(offset + 5, (byte) (length - RECORD_HEADER_SIZE - urlBytes.length - eventBytes.length));
+        buffer.putShort(offset + 6, (short) urlBytes.length);
+        buffer.putLong(offset + 8, nextSeq);
+        buffer.putLong(offset + 16, time);
+        segment.writer.position(offset + RECORD_HEADER_SIZE);
+        segment.writer.put(urlBytes);
+        segment.writer.put(eventBytes);
+        // Commit
+        buffer.putInt(offset, length);
+        segment.position += length;
+        nextSeq++;
+        if (!segment.dirty) {
+            segment.dirty = true;
+            unsynced.add(segment);
+        }
+    }
+
+    /**
+     * @return the new current segment, or null if it could not be mapped and the record is dropped
+     */
+    // Must be called in synchronized block
+    private Segment roll() {
+        Segment full = current;
+        Segment segment = next;
+        next = null;
+        if (segment == null) {
+            try {
+                segment = Segment.map(new File(directory, segmentName(full.index + 1)), full.index + 1, segmentSize);
+            } catch (IOException e) {
+                // Like a record too large for a segment, don't fail the caller's post
+                Log.w(TAG, "EventJournal dropped a record, could not map a new segment", e);
+                return null;
+            }
+        }
+        if (full.position + 4 <= segmentSize) {
+            full.buffer.putInt(full.position, END_OF_SEGMENT);
+        }
+        activate(segment);
+        current = segment;
+        // Let the flusher map the next segment ahead of time
+        notifyAll();
+        return segment;
+    }
+
+    private void activate(Segment segment) {
+        segment.buffer.putInt(OFFSET_VERSION, VERSION);
+        segment.buffer.putLong(OFFSET_BASE_SEQ, nextSeq);
+        segment.buffer.putLong(OFFSET_CREATED, System.currentTimeMillis());
+        segment.buffer.putInt(OFFSET_MAGIC, MAGIC);
+        segment.position = SEGMENT_HEADER_SIZE;
+    }
+
+    /**
+     * Finds the end of the records committed to the segment.
+     *
+     * @return the sequence following the last record
+     */
+    private long recover(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        long seq = buffer.getLong(OFFSET_BASE_SEQ);
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length < RECORD_HEADER_SIZE || position + length > segmentSize) {
+                break;
+            }
+            seq = buffer.getLong(position + 8) + 1;
+            position += length;
+        }
+        segment.position = position;
+        return seq;
+    }
+
+    private void flushLoop() {
+        List<Segment> toSync = new ArrayList<>();
+        long lastSync = 0;
+        while (true) {
+            boolean open;
+            boolean mapNext;
+            int currentIndex;
+            synchronized (this) {
+                // Batch the syncs of busy periods, but map the next segment as soon as the current one is taken
+                while (running && next != null) {
+                    long remaining = unsynced.isEmpty() ? syncIntervalMillis
+                            : lastSync + syncIntervalMillis - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                open = running;
+                toSync.addAll(unsynced);
+                for (Segment segment : unsynced) {
+                    segment.dirty = false;
+                }
+                unsynced.clear();
+                mapNext = open && next == null;
+                currentIndex = open ? current.index : -1;
+            }
+            if (!toSync.isEmpty()) {
+                for (Segment segment : toSync) {
+                    segment.buffer.force();
+                }
+                toSync.clear();
+                lastSync = System.currentTimeMillis();
+            }
+            if (!open) {
+                return;
+            }
+            if (mapNext) {
+                int index = currentIndex + 1;
+                try {
+                    Segment segment = Segment.map(new File(directory, segmentName(index)), index, segmentSize);
+                    synchronized (this) {
+                        if (next == null && current.index == currentIndex) {
+                            next = segment;
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "EventJournal could not map the next segment", e);
+                }
+                deleteOldSegments(currentIndex);
+            }
+        }
+    }
+
+    private void deleteOldSegments(int currentIndex) {
+        File[] files = listSegments(directory);
+        for (File file : files) {
+            if (segmentIndex(file) <= currentIndex - maxSegments && !file.delete()) {
+                Log.w(TAG, "EventJournal could not delete " + file);
+            }
+        }
+    }
+
+    static String segmentName(int index) {
+        return String.format(Locale.US, "%010d", index) + SUFFIX;
+    }
+
+    /**
+     * @return the index encoded in the segment file name, -1 if the name is not one of a segment
+     */
+    static int segmentIndex(File file) {
+        String name = file.getName();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+            return index >= 0 ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the segment files of the journal in the given directory, oldest first; other files are ignored
+     */
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return segmentIndex(file) >= 0;
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                int l = segmentIndex(lhs);
+                int r = segmentIndex(rhs);
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        return files;
+    }
+
+    private static final class Segment {
+        final int index;
+        final MappedByteBuffer buffer;
+        /**
+         * For relative bulk writes, which Java 7 only offers on the buffer position.
+         */
+        final ByteBuffer writer;
+        int position;
+        boolean dirty;
+
+        private Segment(int index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+            writer = buffer.duplicate();
+        }
+
+        static Segment map(File file, int index, int size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                if (raf.length() < size) {
+                    raf.setLength(size);
+                }
+                return new Segment(index, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
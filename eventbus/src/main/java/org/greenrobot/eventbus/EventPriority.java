@@ -0,0 +1,25 @@
+package org.greenrobot.eventbus;
+
+/**
+ * Priority of a posted event. Events that wait in the MAIN, BACKGROUND or ASYNC queues are delivered from the
+ * highest non-empty priority lane first, and in posting order within a lane. Unlike {@link
+ * org.greenrobot.eventbus.annotation.Subscribe#priority()}, which orders subscribers of one event, this orders
+ * queued events against each other.
+ *
+ * @see EventBus#post(String, com.google.gson.JsonObject, EventPriority)
+ */
+public enum EventPriority {
+    LOW,
+
+    /**
+     * Used for all posts unless the url has a default priority.
+     */
+    NORMAL,
+
+    HIGH,
+
+    /**
+     * For the few events that must overtake everything else, e.g. an expired login.
+     */
+    CRITICAL
+}
@@ -18,24 +18,48 @@ package org.greenrobot.eventbus;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
-import android.os.SystemClock;
 
+/**
+ * Delivers events on the main thread in time slices sized to the display frame. Each slice may use at most
+ * {@link #FRAME_BUDGET_DIVISOR a fraction} of the current frame interval; the poster learns how long every subscription
+ * usually takes and yields to the looper before starting a delivery that would overrun the slice.
+ */
 final class HandlerPoster extends Handler {
 
+    static final float DEFAULT_REFRESH_RATE = 60f;
+
+    /**
+     * Only this part of a frame is spent delivering events, the rest is left for input, layout and drawing.
+     */
+    private static final int FRAME_BUDGET_DIVISOR = 2;
+
     private final PendingPostQueue queue;
-    private final int maxMillisInsideHandleMessage;
     private final EventBus eventBus;
+    private volatile long budgetNanos;
     private boolean handlerActive;
 
-    HandlerPoster(EventBus eventBus, Looper looper, int maxMillisInsideHandleMessage) {
+    HandlerPoster(EventBus eventBus, Looper looper, float refreshRate) {
         super(looper);
         this.eventBus = eventBus;
-        this.maxMillisInsideHandleMessage = maxMillisInsideHandleMessage;
+        setRefreshRate(refreshRate);
         queue = new PendingPostQueue();
     }
 
-    void enqueue(Subscription subscription, Object event) {
-        PendingPost pendingPost = PendingPost.obtainPendingPost(subscription, event);
+    /**
+     * Resizes the time slice, e.g. when the display switches between 60Hz and 120Hz.
+     */
+    void setRefreshRate(float refreshRate) {
+        if (refreshRate <= 0) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        budgetNanos = (long) (1000000000L / refreshRate) / FRAME_BUDGET_DIVISOR;
+    }
+
+    void enqueue(EventBus eventBus, Subscription subscription, String url, Object event, EventPriority priority) {
+        enqueue(PendingPost.obtainPendingPost(eventBus, subscription, url, event, priority));
+    }
+
+    void enqueue(PendingPost pendingPost) {
         synchronized (this) {
             queue.enqueue(pendingPost);
             if (!handlerActive) {
@@ -51,7 +75,9 @@ final class HandlerPoster extends Handler {
     public void handleMessage(Message msg) {
         boolean rescheduled = false;
         try {
-            long started = SystemClock.uptimeMillis();
+            long budget = budgetNanos;
+            long started = System.nanoTime();
+            boolean delivered = false;
             for (; ; ) {
                 PendingPost pendingPost = queue.poll();
                 if (pendingPost == null) {
@@ -64,18 +90,23 @@ final class HandlerPoster extends Handler {
                         }
                     }
                 }
-                eventBus.invokeSubscriber(pendingPost);
-                long timeInMethod = SystemClock.uptimeMillis() - started;
-                if (timeInMethod >= maxMillisInsideHandleMessage) {
+                Subscription subscription = pendingPost.subscription;
+                long now = System.nanoTime();
+                // Always deliver at least one post per message so slow subscribers cannot starve the queue
+                if (delivered && now - started + subscription.mainThreadCostNanos > budget) {
+                    queue.enqueueFirst(pendingPost);
                     if (!sendMessage(obtainMessage())) {
                         throw new EventBusException("Could not send handler message");
                     }
                     rescheduled = true;
                     return;
                 }
+                pendingPost.eventBus.invokeSubscriber(pendingPost);
+                subscription.recordMainThreadCost(System.nanoTime() - now);
+                delivered = true;
             }
         } finally {
             handlerActive = rescheduled;
         }
     }
-}
\ No newline at end of file
+}
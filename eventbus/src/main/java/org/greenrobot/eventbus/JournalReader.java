@@ -0,0 +1,268 @@
+package org.greenrobot.eventbus;
+
+import android.util.Log;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the records of an {@link EventJournal} directory, one mapped segment at a time, and replays them into a
+ * bus. Used for crash recovery, to reproduce bugs from a recorded log and as a load generator with realistic traffic.
+ * <p/>
+ * Either iterate with {@link #next()} and the record getters, or call {@link #replay(EventBus)}. Replayed events go
+ * through the normal dispatch (thread modes and priorities) but are not journaled again.
+ */
+public final class JournalReader implements Closeable {
+    private static final String TAG = EventBus.TAG;
+    private static final EventPriority[] PRIORITIES = EventPriority.values();
+
+    private final File directory;
+    private long fromSequence = 0;
+    private long untilSequence = Long.MAX_VALUE;
+    private long fromTimeMillis = Long.MIN_VALUE;
+    private long untilTimeMillis = Long.MAX_VALUE;
+    private float speed = 0;
+
+    private File[] segments;
+    private int segmentIndex = -1;
+    private ByteBuffer buffer;
+    private boolean zeroPadded;
+    private int position;
+    private boolean finished;
+
+    private long sequence;
+    private long timeMillis;
+    private int priority;
+    private int urlOffset;
+    private int urlLength;
+    private int eventLength;
+    private byte[] bytes = new byte[256];
+
+    public JournalReader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Skips records before the given sequence (inclusive start).
+     */
+    public JournalReader fromSequence(long sequence) {
+        fromSequence = sequence;
+        return this;
+    }
+
+    /**
+     * Stops before the given sequence (exclusive end).
+     */
+    public JournalReader untilSequence(long sequence) {
+        untilSequence = sequence;
+        return this;
+    }
+
+    /**
+     * Only reads records posted in the given time range (inclusive start, exclusive end). Records outside are skipped
+     * rather than ending the read, as the wall clock may have been set back while the journal was written.
+     */
+    public JournalReader timeRange(long fromTimeMillis, long untilTimeMillis) {
+        this.fromTimeMillis = fromTimeMillis;
+        this.untilTimeMillis = untilTimeMillis;
+        return this;
+    }
+
+    /**
+     * Pacing of {@link #replay(EventBus)}: 0 (default) replays as fast as possible, 1 keeps the original gaps between
+     * posts, 2 replays twice as fast, and so on.
+     */
+    public JournalReader speed(float speed) {
+        this.speed = Math.max(0, speed);
+        return this;
+    }
+
+    /**
+     * Advances to the next record in range.
+     *
+     * @return false if there are no more records
+     */
+    public boolean next() {
+        while (!finished) {
+            if (buffer == null && !openNextSegment()) {
+                finished = true;
+                return false;
+            }
+            if (position + EventJournal.RECORD_HEADER_SIZE > buffer.limit()) {
+                buffer = null;
+                continue;
+            }
+            int length = buffer.getInt(position);
+            if (length < EventJournal.RECORD_HEADER_SIZE || position + length > buffer.limit()) {
+                // End of segment, or end of the committed records of the segment being written
+                buffer = null;
+                continue;
+            }
+            sequence = buffer.getLong(position + 8);
+            timeMillis = buffer.getLong(position + 16);
+            if (sequence >= untilSequence) {
+                finished = true;
+                return false;
+            }
+            priority = buffer.get(position + 4);
+            urlLength = buffer.getShort(position + 6);
+            urlOffset = position + EventJournal.RECORD_HEADER_SIZE;
+            int padding = zeroPadded ? 0 : buffer.get(position + 5);
+            eventLength = length - EventJournal.RECORD_HEADER_SIZE - urlLength - padding;
+            position += length;
+            if (sequence >= fromSequence && timeMillis >= fromTimeMillis && timeMillis < untilTimeMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public EventPriority getPriority() {
+        return priority >= 0 && priority < PRIORITIES.length ? PRIORITIES[priority] : EventPriority.NORMAL;
+    }
+
+    public String getUrl() {
+        return new String(read(urlOffset, urlLength), 0, urlLength, EventJournal.UTF8);
+    }
+
+    /**
+     * Parses the event of the current record.
+     */
+    public JsonObject getEvent() {
+        byte[] data = read(urlOffset + urlLength, eventLength);
+        int length = eventLength;
+        // Version 1 records don't store their padding, which was zeros
+        while (zeroPadded && length > 0 && data[length - 1] == 0) {
+            length--;
+        }
+        String json = new String(data, 0, length, EventJournal.UTF8);
+        return "null".equals(json) ? null : new JsonParser().parse(json).getAsJsonObject();
+    }
+
+    /**
+     * Posts all remaining records in range to the given bus, paced according to {@link #speed(float)}.
+     *
+     * @return the number of events replayed
+     */
+    public long replay(EventBus eventBus) throws InterruptedException {
+        long count = 0;
+        long firstTime = 0;
+        long startNanos = 0;
+        while (next()) {
+            if (speed > 0) {
+                if (count == 0) {
+                    firstTime = timeMillis;
+                    startNanos = System.nanoTime();
+                } else {
+                    long dueNanos = (long) ((timeMillis - firstTime) * 1000000L / speed);
+                    long waitNanos = dueNanos - (System.nanoTime() - startNanos);
+                    if (waitNanos > 0) {
+                        Thread.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+                    }
+                }
+            }
+            String url = getUrl();
+            try {
+                eventBus.postUnobserved(url, getEvent(), getPriority());
+            } catch (RuntimeException e) {
+                Log.w(TAG, "JournalReader could not replay " + url + " #" + sequence, e);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        buffer = null;
+    }
+
+    private byte[] read(int offset, int length) {
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(bytes, 0, length);
+        return bytes;
+    }
+
+    private boolean openNextSegment() {
+        if (segments == null) {
+            segments = EventJournal.listSegments(directory);
+            segmentIndex = firstSegmentFor(fromSequence) - 1;
+        }
+        while (++segmentIndex < segments.length) {
+            try {
+                ByteBuffer mapped = map(segments[segmentIndex]);
+                if (mapped != null) {
+                    buffer = mapped;
+                    zeroPadded = mapped.getInt(EventJournal.OFFSET_VERSION) == EventJournal.VERSION_ZERO_PADDED;
+                    position = EventJournal.SEGMENT_HEADER_SIZE;
+                    return true;
+                }
+            } catch (IOException e) {
+                // Deleted by the retention of a running journal
+                Log.w(TAG, "JournalReader skipped " + segments[segmentIndex], e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Uses the segment headers to skip segments that end before the given sequence without reading their records.
+     */
+    private int firstSegmentFor(long sequence) {
+        int first = 0;
+        for (int i = 1; i < segments.length; i++) {
+            try {
+                ByteBuffer header = map(segments[i]);
+                if (header == null || header.getLong(EventJournal.OFFSET_BASE_SEQ) > sequence) {
+                    break;
+                }
+                first = i;
+            } catch (IOException e) {
+                first = i;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return the read-only mapping of the segment, null if it was never written
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < EventJournal.SEGMENT_HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int version = mapped.getInt(EventJournal.OFFSET_VERSION);
+            if (mapped.getInt(EventJournal.OFFSET_MAGIC) != EventJournal.MAGIC
+                    || (version != EventJournal.VERSION && version != EventJournal.VERSION_ZERO_PADDED)) {
+                return null;
+            }
+            return mapped;
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.greenrobot.eventbus;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,6 +14,14 @@ public class Method {
     private String id;
     private String name;
     private List<Data> dataList;
+    /**
+     * Result cache, null unless the method is declared cacheable.
+     */
+    ServiceCache cache;
+    /**
+     * Calls in flight, null unless the method is declared single flight.
+     */
+    SingleFlight singleFlight;
 
     public Method(String id, String name) {
         this.id = id;
@@ -30,6 +41,18 @@ public class Method {
         return dataList;
     }
 
+    /**
+     * Identifies a call by the raw JSON values of the declared params, without converting them.
+     */
+    String paramsKey(JsonObject json) {
+        StringBuilder builder = new StringBuilder(64);
+        for (Data data : dataList) {
+            JsonElement value = json == null ? null : json.get(data.getId());
+            builder.append(data.getId()).append('=').append(value).append('&');
+        }
+        return builder.toString();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null) return false;
@@ -0,0 +1,22 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+/**
+ * Result of {@link EventBus#callAll(android.content.Context, List, OnBatchCallBack, ThreadMode, long)}.
+ */
+public interface OnBatchCallBack {
+    /**
+     * @param results the result of every call, in the order of the requests
+     */
+    void onSuccess(List<JsonObject> results);
+
+    /**
+     * Called for the first failing call; the calls still running are cancelled.
+     *
+     * @param request the failed request, or null if the whole batch was cancelled
+     */
+    void onFailure(CallRequest request, Exception e);
+}
@@ -0,0 +1,16 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+/**
+ * Result of {@link EventBus#postAndCollect(String, JsonObject, long, OnCollectCallBack, ThreadMode)}.
+ */
+public interface OnCollectCallBack {
+    /**
+     * @param replies  the non-null replies, in subscriber priority order
+     * @param complete false if the timeout passed before every subscriber answered
+     */
+    void onCollected(List<JsonObject> replies, boolean complete);
+}
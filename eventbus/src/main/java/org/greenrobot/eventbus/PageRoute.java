@@ -0,0 +1,284 @@
+package org.greenrobot.eventbus;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link Page} compiled at registration: a reusable Intent template and one extra writer per {@link Page.Bundle},
+ * chosen once instead of walking the type checks on every {@link EventBus#open(Context, EUrl, JsonObject)}.
+ */
+final class PageRoute {
+    private static final Gson GSON = new Gson();
+    /**
+     * How long a prefetched Intent may wait for its open.
+     */
+    private static final long PREFETCH_TTL_NANOS = 30 * 1000000000L;
+
+    final Service service;
+    final Page page;
+    final int requestCode;
+    private final String[] ids;
+    private final String[] keys;
+    private final boolean[] nullable;
+    private final ExtraWriter[] writers;
+
+    private volatile Intent template;
+    private volatile Prefetched prefetched;
+
+    PageRoute(Service service, Page page) {
+        this.service = service;
+        this.page = page;
+        requestCode = page.getRequestCode() != null ? page.getRequestCode() : -1;
+        List<Page.Bundle> bundles = page.getBundleList();
+        int size = bundles.size();
+        ids = new String[size];
+        keys = new String[size];
+        nullable = new boolean[size];
+        writers = new ExtraWriter[size];
+        for (int i = 0; i < size; i++) {
+            Page.Bundle item = bundles.get(i);
+            ids[i] = item.getId();
+            keys[i] = item.getKey();
+            nullable[i] = item.getNull() == null || item.getNull();
+            writers[i] = writerFor(item.getType());
+        }
+    }
+
+    static String key(String url, String pageId) {
+        return url.toLowerCase(Locale.US) + '#' + pageId.toLowerCase(Locale.US);
+    }
+
+    /**
+     * @return the Intent to start the page with, taking over a matching {@link #prefetch(Context, JsonObject)}
+     */
+    Intent newIntent(Context context, JsonObject json) {
+        Prefetched ready = prefetched;
+        if (ready != null) {
+            prefetched = null;
+            if (ready.json == json && System.nanoTime() - ready.createdNanos < PREFETCH_TTL_NANOS
+                    && matches(ready.values, json)) {
+                return ready.intent;
+            }
+        }
+        return buildIntent(context, json);
+    }
+
+    /**
+     * Builds the Intent for the given data ahead of time, for the next open with the same JsonObject instance and
+     * the same values of the page's bundle ids. Only those values are copied and compared, so changes made to the
+     * object after the prefetch are not lost and an open doesn't pay for the rest of the object.
+     */
+    void prefetch(Context context, JsonObject json) {
+        JsonElement[] values = snapshot(json);
+        Intent intent = buildIntent(context, json);
+        if (matches(values, json)) {
+            prefetched = new Prefetched(json, values, intent);
+        }
+    }
+
+    /**
+     * @return copies of the values the extras are written from, null for no data
+     */
+    private JsonElement[] snapshot(JsonObject json) {
+        if (json == null) {
+            return null;
+        }
+        JsonElement[] values = new JsonElement[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            values[i] = copy(json.get(ids[i]));
+        }
+        return values;
+    }
+
+    private boolean matches(JsonElement[] values, JsonObject json) {
+        if (values == null || json == null) {
+            return values == null && json == null;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            JsonElement value = json.get(ids[i]);
+            if (values[i] == null ? value != null : !values[i].equals(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deep copy of mutable elements; primitives are immutable. JsonElement.deepCopy() is not public in this Gson.
+     */
+    private static JsonElement copy(JsonElement element) {
+        if (element instanceof JsonObject) {
+            JsonObject copy = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+                copy.add(entry.getKey(), copy(entry.getValue()));
+            }
+            return copy;
+        } else if (element instanceof JsonArray) {
+            JsonArray copy = new JsonArray();
+            for (JsonElement item : (JsonArray) element) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        return element;
+    }
+
+    private Intent buildIntent(Context context, JsonObject json) {
+        Intent template = this.template;
+        if (template == null) {
+            template = new Intent(context.getApplicationContext() != null ? context.getApplicationContext() : context,
+                    service.getClazz());
+            this.template = template;
+        }
+        Intent intent = new Intent(template);
+        Bundle extras = writeExtras(json);
+        if (extras != null) {
+            intent.putExtras(extras);
+        }
+        return intent;
+    }
+
+    private Bundle writeExtras(JsonObject json) {
+        if (json == null) {
+            for (int i = 0; i < writers.length; i++) {
+                if (!nullable[i]) {
+                    throw new EventBusException("Page[" + page + "], the id[" + ids[i] + "] has null value to give " + keys[i]);
+                }
+            }
+            return null;
+        }
+        if (writers.length == 0) {
+            return null;
+        }
+        Bundle bundle = new Bundle();
+        for (int i = 0; i < writers.length; i++) {
+            JsonElement value = json.get(ids[i]);
+            if (value == null) {
+                value = JsonNull.INSTANCE;
+            }
+            if (value.isJsonNull()) {
+                if (!nullable[i]) {
+                    throw new EventBusException("Page.Bundle[" + page.getBundleList().get(i) + "], the id[" + ids[i]
+                            + "] has null value to give " + keys[i]);
+                }
+            } else {
+                writers[i].write(bundle, keys[i], value);
+            }
+        }
+        return bundle;
+    }
+
+    private static ExtraWriter writerFor(final Class<? extends Serializable> clazz) {
+        if (clazz == Boolean.class) {
+            return BOOLEAN;
+        } else if (clazz == Integer.class) {
+            return INTEGER;
+        } else if (clazz == Long.class) {
+            return LONG;
+        } else if (clazz == Float.class) {
+            return FLOAT;
+        } else if (clazz == Double.class) {
+            return DOUBLE;
+        } else if (clazz == String.class) {
+            return STRING;
+        } else if (clazz == Byte.class) {
+            return BYTE;
+        } else if (clazz == char.class) {
+            return CHAR;
+        }
+        return new ExtraWriter() {
+            @Override
+            void write(Bundle bundle, String key, JsonElement value) {
+                bundle.putSerializable(key, GSON.fromJson(value, clazz));
+            }
+        };
+    }
+
+    private abstract static class ExtraWriter {
+        abstract void write(Bundle bundle, String key, JsonElement value);
+    }
+
+    private static final ExtraWriter BOOLEAN = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putBoolean(key, value.getAsBoolean());
+        }
+    };
+
+    private static final ExtraWriter INTEGER = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putInt(key, value.getAsInt());
+        }
+    };
+
+    private static final ExtraWriter LONG = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putLong(key, value.getAsLong());
+        }
+    };
+
+    private static final ExtraWriter FLOAT = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putFloat(key, value.getAsFloat());
+        }
+    };
+
+    private static final ExtraWriter DOUBLE = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putDouble(key, value.getAsDouble());
+        }
+    };
+
+    private static final ExtraWriter STRING = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putString(key, value.getAsString());
+        }
+    };
+
+    private static final ExtraWriter BYTE = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putByte(key, value.getAsByte());
+        }
+    };
+
+    private static final ExtraWriter CHAR = new ExtraWriter() {
+        @Override
+        void write(Bundle bundle, String key, JsonElement value) {
+            bundle.putChar(key, value.getAsCharacter());
+        }
+    };
+
+    private static final class Prefetched {
+        final JsonObject json;
+        /**
+         * Copies of the bundle values the Intent was built from, in the order of ids.
+         */
+        final JsonElement[] values;
+        final Intent intent;
+        final long createdNanos = System.nanoTime();
+
+        Prefetched(JsonObject json, JsonElement[] values, Intent intent) {
+            this.json = json;
+            this.values = values;
+            this.intent = intent;
+        }
+    }
+}
@@ -21,32 +21,69 @@ import java.util.List;
 final class PendingPost {
     private final static List<PendingPost> pendingPostPool = new ArrayList<PendingPost>();
 
+    /**
+     * The bus the delivery belongs to, which may be a child of the bus owning the poster.
+     */
+    EventBus eventBus;
+    /**
+     * The url the event was posted to, which differs from the subscription's for wildcard subscribers.
+     */
+    String url;
     Object event;
     Subscription subscription;
+    EventPriority priority;
+    /**
+     * Set for deliveries of {@link EventBus#postAndCollect(String, com.google.gson.JsonObject, long)}, which hand
+     * the subscriber's return value to it.
+     */
+    ReplyFuture replyFuture;
+    int replyIndex;
     PendingPost next;
 
-    private PendingPost(Object event, Subscription subscription) {
+    private PendingPost(EventBus eventBus, String url, Object event, Subscription subscription,
+                        EventPriority priority) {
+        this.eventBus = eventBus;
+        this.url = url;
         this.event = event;
         this.subscription = subscription;
+        this.priority = priority;
     }
 
-    static PendingPost obtainPendingPost(Subscription subscription, Object event) {
+    static PendingPost obtainPendingPost(EventBus eventBus, Subscription subscription, String url, Object event,
+                                         EventPriority priority) {
+        return obtainPendingPost(eventBus, subscription, url, event, priority, null, 0);
+    }
+
+    static PendingPost obtainPendingPost(EventBus eventBus, Subscription subscription, String url, Object event,
+                                         EventPriority priority, ReplyFuture replyFuture, int replyIndex) {
+        PendingPost pendingPost = null;
         synchronized (pendingPostPool) {
             int size = pendingPostPool.size();
             if (size > 0) {
-                PendingPost pendingPost = pendingPostPool.remove(size - 1);
+                pendingPost = pendingPostPool.remove(size - 1);
+                pendingPost.eventBus = eventBus;
+                pendingPost.url = url;
                 pendingPost.event = event;
                 pendingPost.subscription = subscription;
+                pendingPost.priority = priority;
                 pendingPost.next = null;
-                return pendingPost;
             }
         }
-        return new PendingPost(event, subscription);
+        if (pendingPost == null) {
+            pendingPost = new PendingPost(eventBus, url, event, subscription, priority);
+        }
+        pendingPost.replyFuture = replyFuture;
+        pendingPost.replyIndex = replyIndex;
+        return pendingPost;
     }
 
     static void releasePendingPost(PendingPost pendingPost) {
+        pendingPost.eventBus = null;
+        pendingPost.url = null;
         pendingPost.event = null;
         pendingPost.subscription = null;
+        pendingPost.priority = null;
+        pendingPost.replyFuture = null;
         pendingPost.next = null;
         synchronized (pendingPostPool) {
             // Don't let the pool grow indefinitely
@@ -16,38 +16,65 @@
 
 package org.greenrobot.eventbus;
 
+/**
+ * FIFO queue of {@link PendingPost}s split into one lane per {@link EventPriority}. Enqueue and poll are O(1): a bit
+ * mask of non-empty lanes finds the highest priority post without scanning.
+ */
 final class PendingPostQueue {
-    private PendingPost head;
-    private PendingPost tail;
+    private static final int LANE_COUNT = EventPriority.values().length;
+
+    private final PendingPost[] heads = new PendingPost[LANE_COUNT];
+    private final PendingPost[] tails = new PendingPost[LANE_COUNT];
+    private int nonEmptyLanes;
 
     synchronized void enqueue(PendingPost pendingPost) {
         if (pendingPost == null) {
             throw new NullPointerException("null cannot be enqueued");
         }
+        int lane = pendingPost.priority.ordinal();
+        PendingPost tail = tails[lane];
         if (tail != null) {
             tail.next = pendingPost;
-            tail = pendingPost;
-        } else if (head == null) {
-            head = tail = pendingPost;
+            tails[lane] = pendingPost;
+        } else if (heads[lane] == null) {
+            heads[lane] = tails[lane] = pendingPost;
+            nonEmptyLanes |= 1 << lane;
         } else {
             throw new IllegalStateException("Head present, but no tail");
         }
         notifyAll();
     }
 
+    /**
+     * Puts a polled post back in front of its lane, so it is the next one polled unless a higher priority arrives.
+     */
+    synchronized void enqueueFirst(PendingPost pendingPost) {
+        int lane = pendingPost.priority.ordinal();
+        pendingPost.next = heads[lane];
+        heads[lane] = pendingPost;
+        if (tails[lane] == null) {
+            tails[lane] = pendingPost;
+            nonEmptyLanes |= 1 << lane;
+        }
+    }
+
     synchronized PendingPost poll() {
-        PendingPost pendingPost = head;
-        if (head != null) {
-            head = head.next;
-            if (head == null) {
-                tail = null;
-            }
+        if (nonEmptyLanes == 0) {
+            return null;
+        }
+        int lane = 31 - Integer.numberOfLeadingZeros(nonEmptyLanes);
+        PendingPost pendingPost = heads[lane];
+        heads[lane] = pendingPost.next;
+        if (pendingPost.next == null) {
+            tails[lane] = null;
+            nonEmptyLanes &= ~(1 << lane);
         }
+        pendingPost.next = null;
         return pendingPost;
     }
 
     synchronized PendingPost poll(int maxMillisToWait) throws InterruptedException {
-        if (head == null) {
+        if (nonEmptyLanes == 0) {
             wait(maxMillisToWait);
         }
         return poll();
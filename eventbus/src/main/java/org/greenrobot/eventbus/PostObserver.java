@@ -0,0 +1,11 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Sees posts of selected urls before they are dispatched, see {@link EventBus#addPostObserver(String, PostObserver)}.
+ * Called on the posting thread, so implementations must be thread safe and must not block.
+ */
+interface PostObserver {
+    void onPost(String url, JsonObject event, EventPriority priority);
+}
@@ -0,0 +1,254 @@
+package org.greenrobot.eventbus;
+
+import android.util.Log;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Forwards posts of selected urls to the buses of other processes of the app, without Binder marshalling per event.
+ * <p/>
+ * Every process writes its forwarded posts into its own memory-mapped ring file {@code <name>.ring} inside a shared
+ * directory, and reads the rings of all peers found in that directory (see {@link BridgeRing} for the format). Received
+ * events are posted to the local bus through the normal {@link EventBus#post(String, JsonObject, EventPriority)} path,
+ * except that this bridge doesn't forward them again. A reader that falls more than a ring behind skips the lost
+ * events.
+ * <p/>
+ * There is no cross-process wake-up for plain writes to a mapped file, so the reader polls. After an event it polls
+ * every 50µs, backing off exponentially up to {@link #maxPollIntervalMillis(long)} (default: 2s) while idle. An idle
+ * bridge thus wakes up about once per interval, and the first event after an idle period may take up to that long to
+ * arrive.
+ */
+public final class ProcessBridge implements PostObserver {
+    private static final String TAG = EventBus.TAG;
+    private static final EventPriority[] PRIORITIES = EventPriority.values();
+
+    private static final long MIN_PARK_NANOS = 50 * 1000L;
+    /**
+     * Back-off limit while a published record is not completely visible yet, which keeps the retries of a record to
+     * about a second.
+     */
+    private static final long PENDING_PARK_NANOS = 10 * 1000 * 1000L;
+    private static final long PEER_SCAN_INTERVAL_NANOS = 1000 * 1000 * 1000L;
+
+    private final EventBus eventBus;
+    private final File directory;
+    private final String name;
+    private final int capacity;
+    private final Set<String> urls = new CopyOnWriteArraySet<>();
+    private volatile long maxParkNanos = TimeUnit.SECONDS.toNanos(2);
+
+    private volatile BridgeRing.Writer writer;
+    private volatile Thread readerThread;
+    private volatile boolean running;
+
+    /**
+     * @param directory    shared by all processes of the bridge, e.g. a directory in {@code Context.getFilesDir()}
+     * @param name         unique name of this process, e.g. its process name
+     * @param capacityBytes size of this process's ring; a single event may use at most a quarter of it
+     */
+    public ProcessBridge(EventBus eventBus, File directory, String name, int capacityBytes) {
+        this.eventBus = eventBus;
+        this.directory = directory;
+        this.name = name;
+        this.capacity = capacityBytes;
+    }
+
+    /**
+     * Longest time the idle reader sleeps between polls (default: 2s), which bounds the latency of the first event
+     * after an idle period.
+     */
+    public ProcessBridge maxPollIntervalMillis(long maxPollIntervalMillis) {
+        maxParkNanos = Math.max(MIN_PARK_NANOS, TimeUnit.MILLISECONDS.toNanos(maxPollIntervalMillis));
+        return this;
+    }
+
+    /**
+     * Forwards local posts of the url to the peer processes while the bridge is started. The urls are kept when the
+     * bridge is closed and forwarded again when it is restarted.
+     */
+    public synchronized ProcessBridge forward(String url) {
+        if (urls.add(url) && running) {
+            eventBus.addPostObserver(url, this);
+        }
+        return this;
+    }
+
+    public synchronized ProcessBridge stopForwarding(String url) {
+        if (urls.remove(url) && running) {
+            eventBus.removePostObserver(url, this);
+        }
+        return this;
+    }
+
+    /**
+     * Creates this process's ring and starts receiving events of the peers.
+     */
+    public synchronized ProcessBridge start() throws IOException {
+        if (running) {
+            return this;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        writer = new BridgeRing.Writer(BridgeRing.file(directory, name), capacity);
+        running = true;
+        for (String url : urls) {
+            eventBus.addPostObserver(url, this);
+        }
+        readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, "EventBus-ProcessBridge");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        return this;
+    }
+
+    /**
+     * Stops forwarding and receiving until the bridge is started again. Waits for the reader to finish its current
+     * poll, unmaps this process's ring and deletes its file, so peers stop reading it.
+     */
+    public void close() {
+        Thread thread;
+        BridgeRing.Writer closing;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            for (String url : urls) {
+                eventBus.removePostObserver(url, this);
+            }
+            running = false;
+            thread = readerThread;
+            readerThread = null;
+            closing = writer;
+            writer = null;
+            LockSupport.unpark(thread);
+        }
+        // Called by a subscriber on the reader thread, the reader stops after the current event
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!closing.close()) {
+            Log.w(TAG, "ProcessBridge could not delete " + BridgeRing.file(directory, name));
+        }
+    }
+
+    @Override
+    public void onPost(String url, JsonObject event, EventPriority priority) {
+        BridgeRing.Writer ring = writer;
+        if (ring == null) {
+            return;
+        }
+        byte[] urlBytes = url.getBytes(BridgeRing.UTF8);
+        byte[] eventBytes = (event == null ? "null" : event.toString()).getBytes(BridgeRing.UTF8);
+        int length = BridgeRing.recordSize(urlBytes.length, eventBytes.length);
+        if (length > ring.getMaxRecordSize()) {
+            Log.w(TAG, "ProcessBridge dropped " + url + ", " + length + " bytes exceed " + ring.getMaxRecordSize());
+            return;
+        }
+        ring.write(urlBytes, eventBytes, priority.ordinal());
+    }
+
+    private void readLoop() {
+        // Only used by this thread, so a restarted bridge never shares the readers of a previous one
+        Map<String, BridgeRing.Reader> peers = new HashMap<>();
+        BridgeRing.Receiver receiver = new BridgeRing.Receiver() {
+            @Override
+            public void onRecord(String url, String json, int priority) {
+                deliver(url, json, priority);
+            }
+
+            @Override
+            public void onSkipped(String message) {
+                Log.w(TAG, "ProcessBridge " + message);
+            }
+        };
+        long parkNanos = MIN_PARK_NANOS;
+        long lastScan = 0;
+        // Not just running: a bridge closed and restarted by a subscriber on this thread has a new reader
+        while (readerThread == Thread.currentThread()) {
+            long now = System.nanoTime();
+            if (now - lastScan >= PEER_SCAN_INTERVAL_NANOS) {
+                scanPeers(peers, receiver);
+                lastScan = now;
+            }
+            boolean received = false;
+            boolean pending = false;
+            for (Iterator<BridgeRing.Reader> it = peers.values().iterator(); it.hasNext(); ) {
+                BridgeRing.Reader peer = it.next();
+                received |= peer.drain();
+                pending |= peer.isPending();
+                if (peer.stale) {
+                    // Closed by the peer or mapped with an outdated layout, reopened by the next scan
+                    it.remove();
+                    lastScan = 0;
+                }
+            }
+            if (received) {
+                parkNanos = MIN_PARK_NANOS;
+            } else if (readerThread == Thread.currentThread()) {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos * 2, pending ? PENDING_PARK_NANOS : maxParkNanos);
+            }
+        }
+    }
+
+    private void scanPeers(Map<String, BridgeRing.Reader> peers, BridgeRing.Receiver receiver) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String peerName = BridgeRing.ownerOf(file);
+            if (peerName == null || peerName.equals(name) || peers.containsKey(peerName)) {
+                continue;
+            }
+            try {
+                BridgeRing.Reader peer = BridgeRing.Reader.open(file, receiver);
+                // Not initialized yet, retried with the next scan
+                if (peer != null) {
+                    peers.put(peerName, peer);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "ProcessBridge could not open " + file, e);
+            }
+        }
+        for (Iterator<String> it = peers.keySet().iterator(); it.hasNext(); ) {
+            if (!BridgeRing.file(directory, it.next()).exists()) {
+                // Closed by the peer
+                it.remove();
+            }
+        }
+    }
+
+    private void deliver(String url, String json, int priority) {
+        if (priority < 0 || priority >= PRIORITIES.length) {
+            return;
+        }
+        try {
+            JsonObject event = "null".equals(json) ? null : new JsonParser().parse(json).getAsJsonObject();
+            // Received from a peer: other observers see it, this bridge doesn't send it back
+            eventBus.post(url, event, PRIORITIES[priority], this);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "ProcessBridge could not deliver " + url, e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.greenrobot.eventbus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handle returned by {@link EventBus#register(Object)}. {@link #unregister()} removes the subscriptions it holds
+ * directly, without looking up the subscriber or scanning for it.
+ * <p/>
+ * Registrations may be tagged with a group (for example the screen that registers them), so all of them can be
+ * dropped at once with {@link EventBus#unregisterGroup(Object)}.
+ */
+public final class Registration {
+    final EventBus eventBus;
+    /**
+     * The subscriber, or its {@link Subscription.WeakSubscriber} if it was registered weakly.
+     */
+    final Object key;
+    final Object group;
+    final List<Subscription> subscriptions = new ArrayList<>();
+    /**
+     * Only changed in synchronized blocks of the bus.
+     */
+    volatile boolean active = true;
+
+    Registration(EventBus eventBus, Object key, Object group) {
+        this.eventBus = eventBus;
+        this.key = key;
+        this.group = group;
+    }
+
+    /**
+     * Removes all subscriptions of this registration. Does nothing if they have already been removed.
+     */
+    public void unregister() {
+        eventBus.unregister(this);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return the group tag given to {@link EventBus#register(Object, Object)}, or null
+     */
+    public Object getGroup() {
+        return group;
+    }
+}
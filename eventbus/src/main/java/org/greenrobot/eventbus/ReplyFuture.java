@@ -0,0 +1,185 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Replies gathered by {@link EventBus#postAndCollect(String, JsonObject, long, OnCollectCallBack, ThreadMode)}.
+ * Completes as soon as every subscriber answered, or with the replies received so far when the timeout passes.
+ */
+public final class ReplyFuture implements Future<List<JsonObject>> {
+    private final EventBus eventBus;
+    private final String url;
+    private final OnCollectCallBack callBack;
+    private final ThreadMode callbackThreadMode;
+
+    private final JsonObject[] replies;
+    private int remaining;
+    private boolean done;
+    private boolean cancelled;
+    private TimingWheel.Timeout timeout;
+
+    ReplyFuture(EventBus eventBus, String url, int subscriberCount, OnCollectCallBack callBack,
+                ThreadMode callbackThreadMode) {
+        this.eventBus = eventBus;
+        this.url = url;
+        this.callBack = callBack;
+        this.callbackThreadMode = callbackThreadMode != null ? callbackThreadMode : ThreadMode.POSTING;
+        replies = new JsonObject[subscriberCount];
+        remaining = subscriberCount;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    synchronized void start(TimingWheel.Timeout timeout) {
+        if (done) {
+            timeout.cancel();
+        } else {
+            this.timeout = timeout;
+        }
+    }
+
+    /**
+     * @param reply what the subscriber at the given index returned; only JsonObjects count as replies
+     */
+    void answered(int index, Object reply) {
+        TimingWheel.Timeout timeout;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            if (reply instanceof JsonObject) {
+                replies[index] = (JsonObject) reply;
+            }
+            if (--remaining > 0) {
+                return;
+            }
+            done = true;
+            timeout = this.timeout;
+            notifyAll();
+        }
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        notifyCallBack();
+    }
+
+    void timedOut() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            notifyAll();
+        }
+        notifyCallBack();
+    }
+
+    private void notifyCallBack() {
+        if (callBack == null) {
+            return;
+        }
+        eventBus.execute(callbackThreadMode, new Runnable() {
+            @Override
+            public void run() {
+                List<JsonObject> list;
+                boolean complete;
+                synchronized (ReplyFuture.this) {
+                    list = replyList();
+                    complete = remaining == 0;
+                }
+                callBack.onCollected(list, complete);
+            }
+        });
+    }
+
+    // Must be called in synchronized block
+    private List<JsonObject> replyList() {
+        List<JsonObject> list = new ArrayList<>(replies.length);
+        for (JsonObject reply : replies) {
+            if (reply != null) {
+                list.add(reply);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return true if every subscriber answered, false if the timeout passed or the collection was cancelled
+     */
+    public synchronized boolean isComplete() {
+        return done && remaining == 0;
+    }
+
+    /**
+     * Stops waiting for replies; subscribers already running are not interrupted and their replies are ignored.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        TimingWheel.Timeout timeout;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            cancelled = true;
+            timeout = this.timeout;
+            notifyAll();
+        }
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the non-null replies in subscriber priority order; partial if the collection timed out
+     */
+    @Override
+    public synchronized List<JsonObject> get() throws InterruptedException {
+        while (!done) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized List<JsonObject> get(long timeout, TimeUnit unit) throws InterruptedException,
+            TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    private List<JsonObject> report() {
+        if (cancelled) {
+            throw new CancellationException("EventBus postAndCollect " + url + " was cancelled");
+        }
+        return replyList();
+    }
+}
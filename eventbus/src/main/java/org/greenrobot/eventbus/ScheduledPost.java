@@ -0,0 +1,28 @@
+package org.greenrobot.eventbus;
+
+/**
+ * Handle of a post scheduled with {@link EventBus#postDelayed(String, com.google.gson.JsonObject, long)} or
+ * {@link EventBus#postAtFixedRate(String, com.google.gson.JsonObject, long, long)}.
+ */
+public final class ScheduledPost {
+    private final String url;
+    private final TimingWheel.Timeout timeout;
+
+    ScheduledPost(String url, TimingWheel.Timeout timeout) {
+        this.url = url;
+        this.timeout = timeout;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Cancels the post, or the following posts if it is periodic. Cancelling is O(1).
+     *
+     * @return false if it was already cancelled or, unless periodic, already posted
+     */
+    public boolean cancel() {
+        return timeout.cancel();
+    }
+}
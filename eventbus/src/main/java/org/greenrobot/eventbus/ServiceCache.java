@@ -0,0 +1,124 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU result cache of one cacheable service {@link Method}, keyed by {@link Method#paramsKey(JsonObject)} so a hit
+ * needs neither reflection nor param conversion. Cached results are shared between callers and must not be
+ * modified.
+ */
+final class ServiceCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Incremented by every invalidation so results of calls that were in flight meanwhile are not cached.
+     */
+    private int generation;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    ServiceCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize > 0 ? maxSize : 1;
+        this.ttlNanos = ttlMillis * 1000000L;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ServiceCache.Entry> eldest) {
+                if (size() > ServiceCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached entry, or null on a miss
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.createdNanos > ttlNanos) {
+            entries.remove(key);
+            evictionCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return entry;
+    }
+
+    synchronized int generation() {
+        return generation;
+    }
+
+    synchronized void put(String key, JsonObject result, int generation) {
+        if (this.generation == generation) {
+            entries.put(key, new Entry(result));
+        }
+    }
+
+    synchronized void invalidate(String key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount, evictionCount, entries.size());
+    }
+
+    static final class Entry {
+        final JsonObject result;
+        final long createdNanos;
+
+        Entry(JsonObject result) {
+            this.result = result;
+            createdNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stores the service's result before passing it on to the caller's callback.
+     */
+    static final class CachingCallBack implements OnMethodCallBack {
+        private final ServiceCache cache;
+        private final String key;
+        private final int generation;
+        private final OnMethodCallBack callBack;
+
+        CachingCallBack(ServiceCache cache, String key, OnMethodCallBack callBack) {
+            this.cache = cache;
+            this.key = key;
+            this.generation = cache.generation();
+            this.callBack = callBack;
+        }
+
+        @Override
+        public void onSuccess(JsonObject msg) {
+            cache.put(key, msg, generation);
+            if (callBack != null) {
+                callBack.onSuccess(msg);
+            }
+        }
+
+        @Override
+        public void onFailure(JsonObject msg, Exception e) {
+            if (callBack != null) {
+                callBack.onFailure(msg, e);
+            }
+        }
+    }
+}
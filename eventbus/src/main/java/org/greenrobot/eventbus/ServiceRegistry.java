@@ -0,0 +1,237 @@
+package org.greenrobot.eventbus;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable snapshot of the registered services, their compiled pages and the xml resource each service came from.
+ * The bus publishes a new snapshot on every change, so calls and opens read it without locking.
+ * <p/>
+ * Being immutable, one registry can be shared by any number of buses: build it once with
+ * {@link #fromXml(Context, int...)} and pass it to {@link EventBusBuilder#serviceRegistry(ServiceRegistry)}. Parsed
+ * xml resources are cached per package, so registering the same resource on another bus or from another Activity
+ * doesn't parse it again, while the same id in the resources of a plugin is parsed on its own.
+ */
+public final class ServiceRegistry {
+    static final ServiceRegistry EMPTY = new ServiceRegistry(Collections.<Integer, List<Service>>emptyMap(), null);
+    /**
+     * Parsed xml resources by the Resources they came from; weak, so unloaded plugins are not held on to.
+     */
+    private static final Map<Resources, Map<Integer, List<Service>>> MANIFESTS = new WeakHashMap<>();
+
+    private final Map<Integer, List<Service>> servicesByXml;
+    private final Map<String, Service> servicesByUrl;
+    private final Map<String, PageRoute> pageRoutes;
+
+    /**
+     * @param previous snapshot to take the compiled pages of unchanged services from, or null
+     */
+    private ServiceRegistry(Map<Integer, List<Service>> servicesByXml, ServiceRegistry previous) {
+        this.servicesByXml = servicesByXml;
+        Map<String, Service> servicesByUrl = new HashMap<>();
+        Map<String, PageRoute> pageRoutes = new HashMap<>();
+        for (List<Service> services : servicesByXml.values()) {
+            for (Service service : services) {
+                servicesByUrl.put(urlKey(service.getUrl()), service);
+                for (Page page : service.getPages()) {
+                    String key = PageRoute.key(service.getUrl(), page.getId());
+                    PageRoute route = previous != null ? previous.pageRoutes.get(key) : null;
+                    if (route == null || route.service != service || route.page != page) {
+                        route = new PageRoute(service, page);
+                    }
+                    pageRoutes.put(key, route);
+                }
+            }
+        }
+        this.servicesByUrl = servicesByUrl;
+        this.pageRoutes = pageRoutes;
+    }
+
+    /**
+     * Builds a registry of the services declared in the given xml resources.
+     */
+    public static ServiceRegistry fromXml(Context context, int... xmlIds) {
+        ServiceRegistry registry = EMPTY;
+        for (int xmlId : xmlIds) {
+            registry = registry.plus(xmlId, manifest(context, xmlId));
+        }
+        return registry;
+    }
+
+    /**
+     * @return the services of the xml resource, parsed only on first use
+     * @throws EventBusException if the resource can't be parsed; the failure is not cached
+     */
+    static List<Service> manifest(Context context, int xmlId) {
+        Resources resources = cacheKey(context);
+        synchronized (MANIFESTS) {
+            Map<Integer, List<Service>> manifests = MANIFESTS.get(resources);
+            List<Service> services = manifests != null ? manifests.get(xmlId) : null;
+            if (services != null) {
+                return services;
+            }
+        }
+        return cache(resources, xmlId, EventBus.parseServices(context, xmlId), false);
+    }
+
+    /**
+     * Parses the xml resource again, e.g. after a module update, and caches the result for later registrations.
+     */
+    static List<Service> reparse(Context context, int xmlId) {
+        return cache(cacheKey(context), xmlId, EventBus.parseServices(context, xmlId), true);
+    }
+
+    /**
+     * Since API 24 every Activity has its own Resources, so the resources of the application are used when the
+     * context's come from the same package. A plugin context with its own package keeps its own entry.
+     */
+    private static Resources cacheKey(Context context) {
+        Context application = context.getApplicationContext();
+        if (application != null && application != context && application.getPackageName() != null
+                && application.getPackageName().equals(context.getPackageName())) {
+            return application.getResources();
+        }
+        return context.getResources();
+    }
+
+    private static List<Service> cache(Resources resources, int xmlId, List<Service> services, boolean replace) {
+        services = Collections.unmodifiableList(services);
+        synchronized (MANIFESTS) {
+            Map<Integer, List<Service>> manifests = MANIFESTS.get(resources);
+            if (manifests == null) {
+                manifests = new HashMap<>();
+                MANIFESTS.put(resources, manifests);
+            }
+            List<Service> raced = manifests.get(xmlId);
+            if (raced != null && !replace) {
+                return raced;
+            }
+            manifests.put(xmlId, services);
+        }
+        return services;
+    }
+
+    static void clearCaches() {
+        synchronized (MANIFESTS) {
+            MANIFESTS.clear();
+        }
+    }
+
+    private static String urlKey(String url) {
+        return url.toLowerCase(Locale.US);
+    }
+
+    Service findService(String url) {
+        return url != null ? servicesByUrl.get(urlKey(url)) : null;
+    }
+
+    PageRoute findPageRoute(String url, String pageId) {
+        return url != null && pageId != null ? pageRoutes.get(PageRoute.key(url, pageId)) : null;
+    }
+
+    /**
+     * @return the services registered from the given xml resource, empty if none
+     */
+    List<Service> servicesOf(int xmlId) {
+        List<Service> services = servicesByXml.get(xmlId);
+        return services != null ? services : Collections.<Service>emptyList();
+    }
+
+    Collection<Service> services() {
+        return servicesByUrl.values();
+    }
+
+    /**
+     * Adds the services of the xml resource. Services equal to registered ones are skipped, other services with an
+     * already registered url are rejected.
+     */
+    ServiceRegistry plus(int xmlId, List<Service> services) {
+        List<Service> registered = new ArrayList<>(servicesOf(xmlId));
+        for (Service service : services) {
+            Service existing = findService(service.getUrl());
+            if (existing == null) {
+                registered.add(service);
+            } else if (!existing.equals(service)) {
+                throw new EventBusException("Service[" + service + "] the url is already registered");
+            }
+        }
+        return with(xmlId, registered);
+    }
+
+    /**
+     * Replaces the services of the xml resource by a new version of them. Unchanged services and methods are kept
+     * together with their caches, changed ones are taken from the new version, the others are removed.
+     */
+    ServiceRegistry replace(int xmlId, List<Service> services) {
+        List<Service> previous = servicesOf(xmlId);
+        List<Service> replaced = new ArrayList<>(services.size());
+        for (Service service : services) {
+            Service existing = findService(service.getUrl());
+            if (existing != null && !containsInstance(previous, existing)) {
+                throw new EventBusException("Service[" + service + "] the url is already registered by another xml");
+            }
+            if (existing == null) {
+                replaced.add(service);
+            } else if (existing.equals(service)) {
+                replaced.add(existing);
+            } else {
+                replaced.add(keepUnchangedMethods(existing, service));
+            }
+        }
+        return with(xmlId, replaced);
+    }
+
+    private static boolean containsInstance(List<Service> services, Service service) {
+        for (Service item : services) {
+            if (item == service) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the new service version with the methods of the old one that didn't change, so their caches and calls in
+     * flight carry over. The new version is copied, as it is shared through the manifest cache and must not change.
+     */
+    private static Service keepUnchangedMethods(Service existing, Service changed) {
+        Service merged = new Service(changed.getUrl(), changed.getClazz());
+        for (Method method : changed.getMethods()) {
+            Method old = EventBus.findMethodById(existing, method.getId());
+            merged.getMethods().add(old != null && old.equals(method) ? old : method);
+        }
+        merged.getPages().addAll(changed.getPages());
+        return merged;
+    }
+
+    /**
+     * @return a snapshot in which the services of the xml resource are replaced by the given ones
+     */
+    ServiceRegistry with(int xmlId, List<Service> services) {
+        Map<Integer, List<Service>> next = new HashMap<>(servicesByXml);
+        if (services.isEmpty()) {
+            next.remove(xmlId);
+        } else {
+            next.put(xmlId, Collections.unmodifiableList(new ArrayList<>(services)));
+        }
+        return new ServiceRegistry(next, this);
+    }
+
+    ServiceRegistry without(int xmlId) {
+        return servicesByXml.containsKey(xmlId) ? with(xmlId, Collections.<Service>emptyList()) : this;
+    }
+
+    @Override
+    public String toString() {
+        return servicesByUrl.values().toString();
+    }
+}
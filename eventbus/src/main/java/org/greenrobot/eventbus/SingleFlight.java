@@ -0,0 +1,158 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Calls in flight of one {@link org.greenrobot.eventbus.annotation.SingleFlight} service {@link Method}, keyed like
+ * {@link Method#paramsKey(JsonObject)}. The first caller of a key (the leader) invokes the service; callers arriving
+ * before it completes are attached as followers and receive the leader's result.
+ * <p/>
+ * A flight ends with the leader's result, when the leader's {@link CallFuture} times out or is cancelled, or at its
+ * deadline, so a service that never calls back can't keep followers waiting for good.
+ */
+final class SingleFlight {
+    static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    private final Map<String, Flight> flights = new HashMap<>();
+    private final long timeoutMillis;
+
+    /**
+     * @param timeoutMillis deadline of each flight, 0 for none
+     */
+    SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @param executor runs the callbacks of a flight abandoned at its deadline, so they stay off the timer thread
+     * @return the new flight the caller has to run, or null if the callBack was attached to a flight already running
+     */
+    synchronized Flight join(String key, OnMethodCallBack callBack, final Executor executor) {
+        Flight flight = flights.get(key);
+        if (flight != null) {
+            if (callBack != null) {
+                flight.followers.add(callBack);
+            }
+            return null;
+        }
+        final Flight started = flight = new Flight(key, callBack);
+        flights.put(key, flight);
+        if (timeoutMillis > 0) {
+            final Runnable abandon = new Runnable() {
+                @Override
+                public void run() {
+                    started.abandon(new TimeoutException("EventBus single flight call timed out after "
+                            + timeoutMillis + "ms"));
+                }
+            };
+            flight.deadline = EventBus.getTimer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executor.execute(abandon);
+                }
+            }, TimeUnit.MILLISECONDS.toNanos(timeoutMillis), 0);
+        }
+        return flight;
+    }
+
+    final class Flight implements OnMethodCallBack {
+        private final String key;
+        private final OnMethodCallBack leader;
+        private final List<OnMethodCallBack> followers = new ArrayList<>(2);
+        private TimingWheel.Timeout deadline;
+
+        Flight(String key, OnMethodCallBack leader) {
+            this.key = key;
+            this.leader = leader;
+        }
+
+        /**
+         * Detaches the flight so later calls start a new one.
+         *
+         * @return the followers, or null if the flight already finished
+         */
+        private List<OnMethodCallBack> finish() {
+            synchronized (SingleFlight.this) {
+                if (flights.get(key) != this) {
+                    return null;
+                }
+                flights.remove(key);
+                if (deadline != null) {
+                    deadline.cancel();
+                }
+                return new ArrayList<>(followers);
+            }
+        }
+
+        @Override
+        public void onSuccess(JsonObject msg) {
+            List<OnMethodCallBack> followers = finish();
+            if (leader != null) {
+                leader.onSuccess(msg);
+            }
+            if (followers != null) {
+                for (OnMethodCallBack follower : followers) {
+                    follower.onSuccess(msg);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(JsonObject msg, Exception e) {
+            List<OnMethodCallBack> followers = finish();
+            if (leader != null) {
+                leader.onFailure(msg, e);
+            }
+            if (followers != null) {
+                for (OnMethodCallBack follower : followers) {
+                    follower.onFailure(msg, e);
+                }
+            }
+        }
+
+        /**
+         * The service method returned without taking a callback; the leader learns that from the return itself.
+         */
+        void returned() {
+            List<OnMethodCallBack> followers = finish();
+            if (followers != null) {
+                for (OnMethodCallBack follower : followers) {
+                    follower.onSuccess(null);
+                }
+            }
+        }
+
+        /**
+         * The leader gave up waiting (timeout, cancellation) or the deadline passed: fails the followers and lets the
+         * next call start a new flight. A late result still reaches the leader's callback.
+         */
+        void abandon(Exception e) {
+            List<OnMethodCallBack> followers = finish();
+            if (followers != null) {
+                for (OnMethodCallBack follower : followers) {
+                    follower.onFailure(null, e);
+                }
+            }
+        }
+
+        /**
+         * The service method threw; the leader is notified by the caller.
+         */
+        void failed(JsonObject params, Exception e) {
+            List<OnMethodCallBack> followers = finish();
+            if (followers != null) {
+                for (OnMethodCallBack follower : followers) {
+                    follower.onFailure(params, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Posted by EventBus when a BACKGROUND or ASYNC delivery runs longer than its timeout, see
+ * {@link EventBusBuilder#stuckDeliveryTimeout(long)}. Like {@link SubscriberExceptionEvent}, it is posted to
+ * {@link #URL} as {@link #toJson()}, once per stuck delivery.
+ */
+public final class StuckDeliveryEvent {
+    public static final String URL = "eventbus/stuckDelivery";
+
+    /**
+     * The {@link EventBus} instance the delivery belongs to.
+     */
+    public final EventBus eventBus;
+
+    /**
+     * The url the stuck subscriber method is subscribed to.
+     */
+    public final String url;
+
+    /**
+     * The subscriber of the stuck delivery, null if it was registered weakly and collected meanwhile.
+     */
+    public final Object subscriber;
+
+    public final String threadName;
+
+    /**
+     * How long the delivery had been running when it was detected.
+     */
+    public final long elapsedMillis;
+
+    public final long timeoutMillis;
+
+    /**
+     * Snapshot of the stack of the stuck thread at detection.
+     */
+    public final StackTraceElement[] stackTrace;
+
+    /**
+     * Whether the remaining background queue was handed to a new worker, see
+     * {@link EventBusBuilder#replaceStuckBackgroundWorker(boolean)}.
+     */
+    public final boolean workerReplaced;
+
+    public StuckDeliveryEvent(EventBus eventBus, String url, Object subscriber, String threadName, long elapsedMillis,
+                              long timeoutMillis, StackTraceElement[] stackTrace, boolean workerReplaced) {
+        this.eventBus = eventBus;
+        this.url = url;
+        this.subscriber = subscriber;
+        this.threadName = threadName;
+        this.elapsedMillis = elapsedMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.stackTrace = stackTrace;
+        this.workerReplaced = workerReplaced;
+    }
+
+    /**
+     * @return the event as posted to {@link #URL}: url, subscriber (class name), thread, elapsedMillis,
+     * timeoutMillis, stackTrace (one frame per line) and workerReplaced
+     */
+    public JsonObject toJson() {
+        StringBuilder stack = new StringBuilder();
+        for (StackTraceElement element : stackTrace) {
+            stack.append(element).append('\n');
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("url", url);
+        json.addProperty("subscriber", subscriber != null ? subscriber.getClass().getName() : null);
+        json.addProperty("thread", threadName);
+        json.addProperty("elapsedMillis", elapsedMillis);
+        json.addProperty("timeoutMillis", timeoutMillis);
+        json.addProperty("stackTrace", stack.toString());
+        json.addProperty("workerReplaced", workerReplaced);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "StuckDeliveryEvent{" +
+                "url='" + url + '\'' +
+                ", subscriber=" + (subscriber != null ? subscriber.getClass().getName() : null) +
+                ", thread='" + threadName + '\'' +
+                ", elapsedMillis=" + elapsedMillis +
+                ", timeoutMillis=" + timeoutMillis +
+                ", workerReplaced=" + workerReplaced +
+                '}';
+    }
+}
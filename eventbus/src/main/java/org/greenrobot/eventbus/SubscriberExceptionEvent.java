@@ -15,12 +15,19 @@
  */
 package org.greenrobot.eventbus;
 
+import com.google.gson.JsonObject;
+
 /**
  * This Event is posted by EventBus when an exception occurs inside a subscriber's event handling method.
+ * <p/>
+ * It is posted to {@link #URL} as {@link #toJson()}. Failures of the same subscription are aggregated: there is at
+ * most one post per subscription and {@link EventBusBuilder#subscriberExceptionInterval(long) interval}, counting the
+ * failures since the previous one.
  *
  * @author Markus
  */
 public final class SubscriberExceptionEvent {
+    public static final String URL = "eventbus/subscriberException";
     /**
      * The {@link EventBus} instance to with the original event was posted to.
      */
@@ -41,12 +48,61 @@ public final class SubscriberExceptionEvent {
      */
     public final Object causingSubscriber;
 
+    /**
+     * The url the event was posted to; for a wildcard subscriber the matching url, not its pattern.
+     */
+    public final String url;
+
+    /**
+     * Failures of the subscriber method since the previous event about it, including this one.
+     */
+    public final int failureCount;
+
+    /**
+     * Whether the circuit breaker of the subscriber method is open, so it currently doesn't receive events.
+     */
+    public final boolean circuitOpen;
+
     public SubscriberExceptionEvent(EventBus eventBus, Throwable throwable, Object causingEvent,
                                     Object causingSubscriber) {
+        this(eventBus, throwable, causingEvent, causingSubscriber, null, 1, false);
+    }
+
+    public SubscriberExceptionEvent(EventBus eventBus, Throwable throwable, Object causingEvent,
+                                    Object causingSubscriber, String url, int failureCount, boolean circuitOpen) {
         this.eventBus = eventBus;
         this.throwable = throwable;
         this.causingEvent = causingEvent;
         this.causingSubscriber = causingSubscriber;
+        this.url = url;
+        this.failureCount = failureCount;
+        this.circuitOpen = circuitOpen;
+    }
+
+    /**
+     * @return the event as posted to {@link #URL}: url, subscriber (class name), exception (class name), message,
+     * failureCount and circuitOpen
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("url", url);
+        json.addProperty("subscriber", causingSubscriber != null ? causingSubscriber.getClass().getName() : null);
+        json.addProperty("exception", throwable != null ? throwable.getClass().getName() : null);
+        json.addProperty("message", throwable != null ? throwable.getMessage() : null);
+        json.addProperty("failureCount", failureCount);
+        json.addProperty("circuitOpen", circuitOpen);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriberExceptionEvent{" +
+                "url='" + url + '\'' +
+                ", subscriber=" + (causingSubscriber != null ? causingSubscriber.getClass().getName() : null) +
+                ", throwable=" + throwable +
+                ", failureCount=" + failureCount +
+                ", circuitOpen=" + circuitOpen +
+                '}';
     }
 
 }
@@ -0,0 +1,27 @@
+package org.greenrobot.eventbus;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Cross-cutting hook around every subscriber invocation (timing, sampling, payload validation, kill switches).
+ * Interceptors are registered with {@link EventBusBuilder#addSubscriberInterceptor(SubscriberInterceptor)} and are
+ * called on the delivery thread, so they must be thread safe and return quickly.
+ */
+public interface SubscriberInterceptor {
+
+    /**
+     * Called before the subscriber method is invoked, in registration order.
+     *
+     * @param url the url the event was posted to; for a wildcard subscriber the matching url, not its pattern
+     * @return false to skip this delivery; interceptors after this one and {@link #afterInvoke} are not called
+     */
+    boolean beforeInvoke(String url, JsonObject event, Object subscriber);
+
+    /**
+     * Called after the subscriber method returned or threw, in reverse registration order.
+     *
+     * @param costNanos time spent inside the subscriber method
+     * @param error     the Throwable thrown by the subscriber, or null
+     */
+    void afterInvoke(String url, JsonObject event, Object subscriber, long costNanos, Throwable error);
+}
@@ -25,16 +25,43 @@ public class SubscriberMethod {
     final ThreadMode threadMode;
     final String eventType;
     final int priority;
+    /**
+     * Compiled {@link org.greenrobot.eventbus.annotation.Subscribe#filter()}, or null to receive every event.
+     */
+    final EventFilter filter;
+    /**
+     * {@link org.greenrobot.eventbus.annotation.Subscribe#throttleMs()} and
+     * {@link org.greenrobot.eventbus.annotation.Subscribe#debounceMs()} in nanoseconds and milliseconds.
+     */
+    final long throttleNanos;
+    final long debounceMillis;
+    /**
+     * {@link org.greenrobot.eventbus.annotation.Subscribe#timeoutMs()} in nanoseconds, 0 for the timeout of the bus.
+     */
+    final long timeoutNanos;
     /**
      * Used for efficient comparison
      */
     String methodString;
 
     public SubscriberMethod(Method method, String eventType, ThreadMode threadMode, int priority) {
+        this(method, eventType, threadMode, priority, null);
+    }
+
+    SubscriberMethod(Method method, String eventType, ThreadMode threadMode, int priority, EventFilter filter) {
+        this(method, eventType, threadMode, priority, filter, 0, 0, 0);
+    }
+
+    SubscriberMethod(Method method, String eventType, ThreadMode threadMode, int priority, EventFilter filter,
+                     long throttleMillis, long debounceMillis, long timeoutMillis) {
         this.method = method;
         this.threadMode = threadMode;
         this.eventType = eventType;
         this.priority = priority;
+        this.filter = filter;
+        this.throttleNanos = throttleMillis * 1000000L;
+        this.debounceMillis = debounceMillis;
+        this.timeoutNanos = timeoutMillis * 1000000L;
     }
 
     @Override
@@ -59,6 +59,13 @@ class SubscriberMethodFinder {
         }
     }
 
+    /**
+     * @return the subscriber methods if the class was already scanned, otherwise null
+     */
+    List<SubscriberMethod> findCachedSubscriberMethods(Class<?> subscriberClass) {
+        return METHOD_CACHE.get(subscriberClass);
+    }
+
     private List<SubscriberMethod> getMethodsAndRelease(FindState findState) {
         List<SubscriberMethod> subscriberMethods = new ArrayList<>(findState.subscriberMethods);
         findState.recycle();
@@ -115,11 +122,26 @@ class SubscriberMethodFinder {
                         Subscribe subscribeAnnotation = method.getAnnotation(Subscribe.class);
                         Class<?> paramsType = parameterTypes[0];
                         String eventType = subscribeAnnotation.url();
+                        UrlTrie.checkPattern(eventType);
                         if (paramsType == JsonObject.class) {
                             if (findState.checkAdd(method, eventType)) {
                                 ThreadMode threadMode = subscribeAnnotation.threadMode();
+                                EventFilter filter = EventFilter.parse(subscribeAnnotation.filter(), method.getDeclaringClass());
+                                long throttleMs = subscribeAnnotation.throttleMs();
+                                long debounceMs = subscribeAnnotation.debounceMs();
+                                if (throttleMs < 0 || debounceMs < 0 || (throttleMs > 0 && debounceMs > 0)) {
+                                    String methodName = method.getDeclaringClass().getName() + "." + method.getName();
+                                    throw new EventBusException("@Subscribe method " + methodName +
+                                            " may either throttle or debounce, with a positive period");
+                                }
+                                long timeoutMs = subscribeAnnotation.timeoutMs();
+                                if (timeoutMs < 0) {
+                                    String methodName = method.getDeclaringClass().getName() + "." + method.getName();
+                                    throw new EventBusException("@Subscribe method " + methodName +
+                                            " has a negative timeout");
+                                }
                                 findState.subscriberMethods.add(new SubscriberMethod(method, eventType, threadMode,
-                                        subscribeAnnotation.priority()));
+                                        subscribeAnnotation.priority(), filter, throttleMs, debounceMs, timeoutMs));
                             }
                         } else {
                             String methodName = method.getDeclaringClass().getName() + "." + method.getName();
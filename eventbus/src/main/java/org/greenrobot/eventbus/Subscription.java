@@ -15,7 +15,21 @@
  */
 package org.greenrobot.eventbus;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
 final class Subscription {
+    private static final int CIRCUIT_CLOSED = 0;
+    private static final int CIRCUIT_OPEN = 1;
+    private static final int CIRCUIT_HALF_OPEN = 2;
+    /**
+     * Failed trials reopen the circuit for up to 2^4 times the open time.
+     */
+    private static final int MAX_BACKOFF_SHIFT = 4;
+    /**
+     * The subscriber, or its {@link WeakSubscriber} if it was registered weakly. Use {@link #getSubscriber()} to
+     * deliver events.
+     */
     final Object subscriber;
     final SubscriberMethod subscriberMethod;
     /**
@@ -23,6 +37,31 @@ final class Subscription {
      * {@link EventBus#invokeSubscriber(PendingPost)} to prevent race conditions.
      */
     volatile boolean active;
+    /**
+     * Moving average of the time a main thread delivery takes, used by {@link HandlerPoster} to plan its time slices.
+     * Only read and written on the main thread.
+     */
+    long mainThreadCostNanos;
+    /**
+     * Throttle and debounce state, guarded by the subscription.
+     */
+    private long throttleUntilNanos;
+    private EventBus.PostEvent debouncedPost;
+    private long debounceDeadlineNanos;
+    /**
+     * True while failures are counted or the circuit is not closed, so deliveries of healthy subscriptions skip the
+     * circuit breaker without locking.
+     */
+    volatile boolean failing;
+    /**
+     * Circuit breaker and failure reports, guarded by the subscription.
+     */
+    private int consecutiveFailures;
+    private int circuitState = CIRCUIT_CLOSED;
+    private long circuitOpenUntilNanos;
+    private int timesOpened;
+    private int unreportedFailures;
+    private long lastReportNanos;
 
     Subscription(Object subscriber, SubscriberMethod subscriberMethod) {
         this.subscriber = subscriber;
@@ -30,6 +69,138 @@ final class Subscription {
         active = true;
     }
 
+    /**
+     * @return the subscriber, or null if it was registered weakly and has been garbage collected
+     */
+    Object getSubscriber() {
+        return subscriber instanceof WeakSubscriber ? ((WeakSubscriber) subscriber).get() : subscriber;
+    }
+
+    /**
+     * @return true if the event may be delivered, false if it falls into the throttle period of a previous one
+     */
+    synchronized boolean throttle(long nowNanos) {
+        if (throttleUntilNanos != 0 && nowNanos - throttleUntilNanos < 0) {
+            return false;
+        }
+        throttleUntilNanos = nowNanos + subscriberMethod.throttleNanos;
+        if (throttleUntilNanos == 0) {
+            throttleUntilNanos = 1;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the debounced event and pushes the deadline back.
+     *
+     * @return true if no timer is pending for this subscription, so the caller has to schedule one
+     */
+    synchronized boolean debounce(EventBus.PostEvent post, long nowNanos) {
+        boolean schedule = debouncedPost == null;
+        debouncedPost = post;
+        debounceDeadlineNanos = nowNanos + subscriberMethod.debounceMillis * 1000000L;
+        return schedule;
+    }
+
+    /**
+     * Called by the timer.
+     *
+     * @return the debounced event if its deadline has passed, otherwise null
+     */
+    synchronized EventBus.PostEvent pollDebouncedPost(long nowNanos) {
+        if (debounceDeadlineNanos - nowNanos > 0) {
+            return null;
+        }
+        EventBus.PostEvent post = debouncedPost;
+        debouncedPost = null;
+        return post;
+    }
+
+    synchronized long debounceRemainingNanos(long nowNanos) {
+        return Math.max(0, debounceDeadlineNanos - nowNanos);
+    }
+
+    /**
+     * @return false while the circuit is open, or while the one trial delivery of a half open circuit is running
+     */
+    synchronized boolean allowDelivery(long nowNanos) {
+        switch (circuitState) {
+            case CIRCUIT_OPEN:
+                if (nowNanos - circuitOpenUntilNanos < 0) {
+                    return false;
+                }
+                circuitState = CIRCUIT_HALF_OPEN;
+                return true;
+            case CIRCUIT_HALF_OPEN:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Hands back the trial delivery of a half open circuit that was allowed but skipped before its invoke, e.g. by an
+     * interceptor, so the next delivery becomes the trial instead.
+     */
+    synchronized void releaseTrial() {
+        if (circuitState == CIRCUIT_HALF_OPEN) {
+            circuitState = CIRCUIT_OPEN;
+        }
+    }
+
+    synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        timesOpened = 0;
+        circuitState = CIRCUIT_CLOSED;
+        failing = false;
+    }
+
+    /**
+     * @param failureThreshold consecutive failures that open the circuit, 0 if the circuit breaker is disabled
+     * @return true if this failure opened the circuit
+     */
+    synchronized boolean recordFailure(long nowNanos, int failureThreshold, long openNanos) {
+        if (failureThreshold <= 0) {
+            return false;
+        }
+        failing = true;
+        consecutiveFailures++;
+        if (circuitState == CIRCUIT_HALF_OPEN
+                || (circuitState == CIRCUIT_CLOSED && consecutiveFailures >= failureThreshold)) {
+            circuitOpenUntilNanos = nowNanos + (openNanos << Math.min(timesOpened, MAX_BACKOFF_SHIFT));
+            timesOpened++;
+            circuitState = CIRCUIT_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized boolean isCircuitOpen() {
+        return circuitState != CIRCUIT_CLOSED;
+    }
+
+    /**
+     * Counts a failure for the next report.
+     *
+     * @param force report now, regardless of the interval
+     * @return the failures to report now, 0 if the previous report is less than the interval ago
+     */
+    synchronized int takeFailureReport(long nowNanos, long intervalNanos, boolean force) {
+        unreportedFailures++;
+        if (!force && lastReportNanos != 0 && nowNanos - lastReportNanos < intervalNanos) {
+            return 0;
+        }
+        lastReportNanos = nowNanos != 0 ? nowNanos : 1;
+        int failures = unreportedFailures;
+        unreportedFailures = 0;
+        return failures;
+    }
+
+    void recordMainThreadCost(long costNanos) {
+        // Exponential moving average with a weight of 1/4 for the newest sample
+        mainThreadCostNanos = mainThreadCostNanos == 0 ? costNanos : mainThreadCostNanos + ((costNanos - mainThreadCostNanos) >> 2);
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other instanceof Subscription) {
@@ -45,4 +216,14 @@ final class Subscription {
     public int hashCode() {
         return subscriber.hashCode() + subscriberMethod.methodString.hashCode();
     }
-}
\ No newline at end of file
+
+    /**
+     * Registry key of a weakly registered subscriber, shared by all its subscriptions. Enqueued once the subscriber is
+     * collected, so {@link EventBus} can remove exactly its subscriptions.
+     */
+    static final class WeakSubscriber extends WeakReference<Object> {
+        WeakSubscriber(Object subscriber, ReferenceQueue<Object> queue) {
+            super(subscriber, queue);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.greenrobot.eventbus;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: timeouts are linked into the bucket of their deadline tick, so scheduling and cancelling are
+ * O(1) no matter how many timeouts are pending. One daemon thread advances the wheel every tick and runs the expired
+ * tasks; it sleeps while nothing is scheduled.
+ * <p/>
+ * Tasks run on the wheel thread and must be short, e.g. hand the real work to an executor or a poster.
+ */
+final class TimingWheel {
+    private static final String TAG = EventBus.TAG;
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startNanos;
+    /**
+     * Last tick whose bucket was expired.
+     */
+    private long tick;
+    private int pending;
+    private Thread thread;
+
+    /**
+     * @param tickMillis resolution of the deadlines
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     */
+    TimingWheel(long tickMillis, int wheelSize) {
+        tickNanos = tickMillis * 1000000L;
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        buckets = new Timeout[size];
+        mask = size - 1;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Runs the task once after the given delay, or repeatedly at a fixed rate if a period is given.
+     *
+     * @param periodNanos 0 to run once
+     */
+    synchronized Timeout schedule(Runnable task, long delayNanos, long periodNanos) {
+        Timeout timeout = new Timeout(this, task, Math.max(0, periodNanos));
+        if (pending == 0) {
+            // Skip the ticks the wheel slept through instead of expiring empty buckets one by one
+            tick = Math.max(tick, currentTick() - 1);
+        }
+        timeout.deadlineNanos = System.nanoTime() - startNanos + Math.max(0, delayNanos);
+        add(timeout, Math.max(tick + 1, tickOf(timeout.deadlineNanos)));
+        if (thread == null) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWheel();
+                }
+            }, "EventBus-Timer");
+            thread.setDaemon(true);
+            thread.start();
+        } else if (pending == 1) {
+            notifyAll();
+        }
+        return timeout;
+    }
+
+    synchronized boolean cancel(Timeout timeout) {
+        if (timeout.cancelled || timeout.done) {
+            return false;
+        }
+        timeout.cancelled = true;
+        if (timeout.bucket >= 0) {
+            remove(timeout);
+        }
+        return true;
+    }
+
+    // Must be called in synchronized block
+    private void add(Timeout timeout, long deadlineTick) {
+        int bucket = (int) (deadlineTick & mask);
+        timeout.deadlineTick = deadlineTick;
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+        pending++;
+    }
+
+    // Must be called in synchronized block
+    private void remove(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        pending--;
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    /**
+     * @return the first tick at or after the given time since the start of the wheel
+     */
+    private long tickOf(long nanos) {
+        return (nanos + tickNanos - 1) / tickNanos;
+    }
+
+    private void runWheel() {
+        List<Timeout> expired = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (pending == 0) {
+                        wait();
+                    }
+                    long waitNanos;
+                    while ((waitNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime()) > 0) {
+                        wait(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+                    }
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "Timer thread interrupted, keeps running");
+                    continue;
+                }
+                tick++;
+                int bucket = (int) (tick & mask);
+                Timeout timeout = buckets[bucket];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    // Later rounds of the wheel stay in the bucket
+                    if (timeout.deadlineTick <= tick) {
+                        remove(timeout);
+                        timeout.done = timeout.periodNanos == 0;
+                        expired.add(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+            for (Timeout timeout : expired) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Timer task failed", e);
+                }
+                if (timeout.periodNanos > 0) {
+                    synchronized (this) {
+                        if (!timeout.cancelled) {
+                            // Fixed rate: the next deadline follows the previous one, not the end of the run. It is
+                            // kept in nanoseconds, so periods that aren't a multiple of the tick don't drift.
+                            timeout.deadlineNanos += timeout.periodNanos;
+                            add(timeout, Math.max(tick + 1, tickOf(timeout.deadlineNanos)));
+                        }
+                    }
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    static final class Timeout {
+        final TimingWheel wheel;
+        final Runnable task;
+        final long periodNanos;
+        /**
+         * Exact deadline since the start of the wheel, rounded up to deadlineTick.
+         */
+        long deadlineNanos;
+        long deadlineTick;
+        int bucket = -1;
+        Timeout prev;
+        Timeout next;
+        boolean cancelled;
+        boolean done;
+
+        Timeout(TimingWheel wheel, Runnable task, long periodNanos) {
+            this.wheel = wheel;
+            this.task = task;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * @return false if it was already cancelled or has run (unless periodic)
+         */
+        boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.greenrobot.eventbus;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix trie over the '/' separated segments of wildcard subscription urls. A "*" segment matches exactly one
+ * segment, a trailing "**" matches any number of remaining segments (including none). Matching a url costs
+ * O(depth) for the usual case of few wildcards per level instead of a scan over all registered patterns.
+ */
+final class UrlTrie {
+    static final String ANY_SEGMENT = "*";
+    static final String ANY_PATH = "**";
+
+    private final Node root = new Node();
+    private int size;
+
+    static boolean isPattern(String url) {
+        return url.indexOf('*') >= 0;
+    }
+
+    /**
+     * @throws EventBusException if the wildcards are not whole segments or "**" is not the last segment
+     */
+    static void checkPattern(String url) {
+        if (!isPattern(url)) {
+            return;
+        }
+        String[] segments = url.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (isPattern(segment) && !ANY_SEGMENT.equals(segment) && !ANY_PATH.equals(segment)) {
+                throw new EventBusException("Url pattern[" + url + "] wildcards must be whole segments, found " + segment);
+            }
+            if (ANY_PATH.equals(segment) && i != segments.length - 1) {
+                throw new EventBusException("Url pattern[" + url + "] ** is only allowed as the last segment");
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(String pattern) {
+        checkPattern(pattern);
+        String[] segments = pattern.split("/");
+        Node node = root;
+        int last = segments.length - 1;
+        boolean anyPath = ANY_PATH.equals(segments[last]);
+        for (int i = 0; i < (anyPath ? last : segments.length); i++) {
+            node = node.child(segments[i], true);
+        }
+        if (anyPath) {
+            if (node.anyPathPattern == null) size++;
+            node.anyPathPattern = pattern;
+        } else {
+            if (node.pattern == null) size++;
+            node.pattern = pattern;
+        }
+    }
+
+    void remove(String pattern) {
+        String[] segments = pattern.split("/");
+        if (remove(root, segments, 0)) {
+            size--;
+        }
+    }
+
+    private boolean remove(Node node, String[] segments, int index) {
+        boolean removed;
+        if (index == segments.length - 1 && ANY_PATH.equals(segments[index])) {
+            removed = node.anyPathPattern != null;
+            node.anyPathPattern = null;
+        } else if (index == segments.length) {
+            removed = node.pattern != null;
+            node.pattern = null;
+        } else {
+            Node child = node.child(segments[index], false);
+            if (child == null) {
+                return false;
+            }
+            removed = remove(child, segments, index + 1);
+            if (child.isEmpty()) {
+                node.removeChild(segments[index]);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Adds all patterns matching the given (non-pattern) url to out.
+     */
+    void match(String url, List<String> out) {
+        match(root, url.split("/"), 0, out);
+    }
+
+    private void match(Node node, String[] segments, int index, List<String> out) {
+        if (node.anyPathPattern != null) {
+            out.add(node.anyPathPattern);
+        }
+        if (index == segments.length) {
+            if (node.pattern != null) {
+                out.add(node.pattern);
+            }
+            return;
+        }
+        if (node.children != null) {
+            Node child = node.children.get(segments[index]);
+            if (child != null) {
+                match(child, segments, index + 1, out);
+            }
+        }
+        if (node.anySegment != null) {
+            match(node.anySegment, segments, index + 1, out);
+        }
+    }
+
+    private static final class Node {
+        Map<String, Node> children;
+        Node anySegment;
+        /**
+         * The pattern ending at this node.
+         */
+        String pattern;
+        /**
+         * The pattern ending with "**" right below this node.
+         */
+        String anyPathPattern;
+
+        Node child(String segment, boolean create) {
+            if (ANY_SEGMENT.equals(segment)) {
+                if (anySegment == null && create) {
+                    anySegment = new Node();
+                }
+                return anySegment;
+            }
+            Node child = children != null ? children.get(segment) : null;
+            if (child == null && create) {
+                if (children == null) {
+                    children = new HashMap<>();
+                }
+                child = new Node();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        void removeChild(String segment) {
+            if (ANY_SEGMENT.equals(segment)) {
+                anySegment = null;
+            } else if (children != null) {
+                children.remove(segment);
+            }
+        }
+
+        boolean isEmpty() {
+            return pattern == null && anyPathPattern == null && anySegment == null
+                    && (children == null || children.isEmpty());
+        }
+    }
+}
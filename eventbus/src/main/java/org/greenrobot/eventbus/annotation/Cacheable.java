@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.greenrobot.eventbus.annotation;
+
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a pure, idempotent service method whose results may be cached. Calls with the same bound params are then
+ * answered from the cache without invoking the method or converting its params. The same can be declared in the
+ * service xml with {@code <method cache="true" cacheSize=".." cacheTtl="..">}.
+ * <p/>
+ * Only results delivered through the method's {@link org.greenrobot.eventbus.OnMethodCallBack} param are cached;
+ * registering a cacheable method without one fails.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Cacheable {
+    /**
+     * Maximum number of cached results; the least recently used ones are evicted first.
+     */
+    int size() default 32;
+
+    /**
+     * Time in milliseconds a result stays valid, 0 to keep it until evicted or invalidated.
+     */
+    long ttlMillis() default 0;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2012-2016 Markus Junginger, greenrobot (http://greenrobot.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.greenrobot.eventbus.annotation;
+
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Deduplicates concurrent calls of a service method: while a call with the same bound params is running, further
+ * calls don't invoke the method again but receive the running call's result through their own callback. The same
+ * can be declared in the service xml with {@code <method singleFlight="true">}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface SingleFlight {
+    /**
+     * Time in milliseconds followers wait for the running call before they fail with a
+     * {@link java.util.concurrent.TimeoutException} and the next call starts a new one, in case the service never
+     * calls back; 0 to wait forever. In xml: {@code <method singleFlightTimeout="...">}.
+     */
+    long timeoutMillis() default 60000;
+}
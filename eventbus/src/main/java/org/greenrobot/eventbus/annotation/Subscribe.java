@@ -29,6 +29,10 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
 public @interface Subscribe {
+    /**
+     * The url to receive events for. Segments are separated by '/'; a "*" segment matches any single segment and a
+     * trailing "**" matches any number of segments, e.g. "order/*" receives "order/created" and "order/paid".
+     */
     String url();
 
     /**
@@ -40,5 +44,34 @@ public @interface Subscribe {
     int priority() default 0;
 
     ThreadMode threadMode() default ThreadMode.POSTING;
+
+    /**
+     * Condition on the event content, checked on the posting thread before the event is queued for this subscriber,
+     * e.g. {@code "type == 'paid' && user.id == $userId"}. Each clause compares a (dotted) event member with
+     * {@code ==} or {@code !=} to a literal ({@code 'text'}, numbers, {@code true}, {@code false}, {@code null}) or to
+     * a field of the subscriber ({@code $name}, keep it from being renamed by ProGuard). Clauses are joined with
+     * {@code &&}. The default "" accepts all events.
+     */
+    String filter() default "";
+
+    /**
+     * Delivers at most one event per period: the first event is delivered, following events are dropped until the
+     * period has passed. Dropped events are never queued or invoked. The default 0 delivers every event.
+     */
+    long throttleMs() default 0;
+
+    /**
+     * Delivers only the latest event once no further event arrived for the given time, e.g. for search-as-you-type.
+     * The delivery happens from a timer, so {@link ThreadMode#POSTING} subscribers receive it on a background thread.
+     * The default 0 delivers every event.
+     */
+    long debounceMs() default 0;
+
+    /**
+     * Time a {@link ThreadMode#BACKGROUND} or {@link ThreadMode#ASYNC} delivery may take before the bus reports it as
+     * stuck, see {@link org.greenrobot.eventbus.EventBusBuilder#stuckDeliveryTimeout(long)}. The default 0 uses the
+     * timeout of the bus.
+     */
+    long timeoutMs() default 0;
 }
 